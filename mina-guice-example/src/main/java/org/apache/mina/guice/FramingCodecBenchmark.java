@@ -0,0 +1,177 @@
+package org.apache.mina.guice;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.service.DefaultTransportMetadata;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.session.IoSessionConfig;
+import org.apache.mina.filter.codec.CumulativeProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.guice.filter.LengthPrefixedFrameDecoder;
+
+import java.net.SocketAddress;
+import java.util.Random;
+
+/**
+ * Compares the zero-copy {@link LengthPrefixedFrameDecoder} with an equivalent decoder built on
+ * {@link CumulativeProtocolDecoder}, which copies each frame out of the cumulative buffer.
+ *
+ * A stream of length-prefixed frames with random payload sizes is split into fixed-size reads, as a
+ * socket would deliver it, and fed through each decoder repeatedly.  Each decoder is warmed up before
+ * it is measured, and the checksums of the decoded frames are compared to ensure both decoded the
+ * same stream.
+ *
+ * Usage: FramingCodecBenchmark [maxPayload] [readSize] [seconds]
+ */
+public class FramingCodecBenchmark {
+
+    private static final int STREAM_FRAMES = 10000;
+
+    public static void main(final String[] args) throws Exception {
+
+        final int maxPayload = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        final int readSize = args.length > 1 ? Integer.parseInt(args[1]) : 1460;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        final byte[][] reads = split(stream(maxPayload), readSize);
+
+        for (int round = 0; round < 2; ++round) {
+
+            final boolean warmup = round == 0;
+            final Result zeroCopy = run(new LengthPrefixedFrameDecoder(), reads, seconds);
+            final Result copying = run(new CopyingFrameDecoder(), reads, seconds);
+
+            if (zeroCopy.checksum != copying.checksum) {
+                throw new IllegalStateException("Decoders disagree on the decoded stream.");
+            }
+
+            if (!warmup) {
+                System.out.printf("max payload %d, read size %d%n", maxPayload, readSize);
+                System.out.printf("  LengthPrefixedFrameDecoder: %,.0f frames/sec%n", zeroCopy.framesPerSecond);
+                System.out.printf("  CumulativeProtocolDecoder:  %,.0f frames/sec%n", copying.framesPerSecond);
+            }
+
+        }
+
+    }
+
+    private static Result run(final ProtocolDecoder decoder, final byte[][] reads, final int seconds) throws Exception {
+
+        // A stream transport, so that CumulativeProtocolDecoder keeps partial frames between reads.
+        final DummySession session = new DummySession();
+        session.setTransportMetadata(new DefaultTransportMetadata("benchmark", "stream", false, true,
+                SocketAddress.class, IoSessionConfig.class, Object.class));
+
+        final ChecksumOutput out = new ChecksumOutput();
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final long start = System.nanoTime();
+
+        long passes = 0;
+        long checksum = 0;
+
+        do {
+
+            out.checksum = 0;
+
+            for (final byte[] read : reads) {
+                // MINA allocates a fresh buffer for every read, so do the same here.
+                decoder.decode(session, IoBuffer.wrap(read.clone()), out);
+            }
+
+            checksum = out.checksum;
+            ++passes;
+
+        } while (System.nanoTime() - deadline < 0);
+
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+        decoder.dispose(session);
+
+        return new Result(passes * STREAM_FRAMES / elapsed, checksum);
+
+    }
+
+    private static byte[] stream(final int maxPayload) {
+
+        final Random random = new Random(0);
+        final IoBuffer stream = IoBuffer.allocate(STREAM_FRAMES * (4 + maxPayload / 2)).setAutoExpand(true);
+
+        for (int i = 0; i < STREAM_FRAMES; ++i) {
+            final byte[] payload = new byte[1 + random.nextInt(maxPayload)];
+            random.nextBytes(payload);
+            stream.putInt(payload.length).put(payload);
+        }
+
+        stream.flip();
+
+        final byte[] bytes = new byte[stream.remaining()];
+        stream.get(bytes);
+        return bytes;
+
+    }
+
+    private static byte[][] split(final byte[] stream, final int readSize) {
+
+        final byte[][] reads = new byte[(stream.length + readSize - 1) / readSize][];
+
+        for (int i = 0; i < reads.length; ++i) {
+            final int offset = i * readSize;
+            reads[i] = new byte[Math.min(readSize, stream.length - offset)];
+            System.arraycopy(stream, offset, reads[i], 0, reads[i].length);
+        }
+
+        return reads;
+
+    }
+
+    private static final class Result {
+
+        private final double framesPerSecond;
+
+        private final long checksum;
+
+        public Result(final double framesPerSecond, final long checksum) {
+            this.framesPerSecond = framesPerSecond;
+            this.checksum = checksum;
+        }
+
+    }
+
+    private static final class ChecksumOutput implements ProtocolDecoderOutput {
+
+        private long checksum;
+
+        @Override
+        public void write(final Object message) {
+            final IoBuffer frame = (IoBuffer) message;
+            checksum = checksum * 31 + frame.remaining();
+            if (frame.hasRemaining()) checksum += frame.get(frame.limit() - 1);
+        }
+
+        @Override
+        public void flush(final NextFilter nextFilter, final IoSession session) {}
+
+    }
+
+    /**
+     * The conventional approach, copying each complete frame into a newly allocated buffer.
+     */
+    private static final class CopyingFrameDecoder extends CumulativeProtocolDecoder {
+
+        @Override
+        protected boolean doDecode(final IoSession session, final IoBuffer in, final ProtocolDecoderOutput out) {
+
+            if (!in.prefixedDataAvailable(4)) return false;
+
+            final int length = in.getInt();
+            final byte[] frame = new byte[length];
+            in.get(frame);
+            out.write(IoBuffer.wrap(frame));
+            return true;
+
+        }
+
+    }
+
+}
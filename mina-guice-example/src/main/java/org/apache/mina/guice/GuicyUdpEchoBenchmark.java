@@ -0,0 +1,168 @@
+package org.apache.mina.guice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.service.IoAcceptor;
+import org.apache.mina.core.service.IoHandler;
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.filter.DatagramSessionRetentionFilter;
+import org.apache.mina.transport.socket.nio.NioDatagramAcceptor;
+
+import javax.inject.Inject;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the packets per second of a Guice-wired UDP echo server.  Each echoed packet passes through
+ * the session retention filter and the handler, both intercepted to run in session scope, and the
+ * handler resolves a {@link MinaScopes#SESSION} scoped counter for every datagram.
+ *
+ * A number of client channels, each acting as a distinct remote address, send fixed-size datagrams in
+ * lock step with the echoes for the configured duration.
+ *
+ * Usage: GuicyUdpEchoBenchmark [clients] [seconds]
+ */
+public class GuicyUdpEchoBenchmark {
+
+    private static final int PORT = 9124;
+
+    private static final int PACKET_SIZE = 64;
+
+    private static final int WINDOW = 32;
+
+    private static final int RECEIVE_TIMEOUT_MILLIS = 1000;
+
+    public static void main(final String[] args) throws Exception {
+
+        final int clients = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        final Injector injector = Guice.createInjector(new GuicyUdpEchoModule());
+        final IoAcceptor ioAcceptor = injector.getInstance(IoAcceptor.class);
+        ioAcceptor.bind(new InetSocketAddress("127.0.0.1", PORT));
+
+        final AtomicLong echoed = new AtomicLong();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final Thread[] threads = new Thread[clients];
+
+        for (int i = 0; i < clients; ++i) {
+            threads[i] = new Thread(new Client(echoed, deadline), "udp-client-" + i);
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("%d clients, %d seconds: %d packets echoed, %.0f packets/sec%n",
+                clients, seconds, echoed.get(), echoed.get() / (double) seconds);
+
+        ioAcceptor.unbind();
+        ioAcceptor.dispose();
+
+    }
+
+    private static final class Client implements Runnable {
+
+        private final AtomicLong echoed;
+
+        private final long deadline;
+
+        public Client(final AtomicLong echoed, final long deadline) {
+            this.echoed = echoed;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+
+            final DatagramPacket out = new DatagramPacket(new byte[PACKET_SIZE], PACKET_SIZE);
+            final DatagramPacket in = new DatagramPacket(new byte[PACKET_SIZE], PACKET_SIZE);
+
+            // A blocking DatagramChannel ignores SO_TIMEOUT, so a socket is used to survive lost packets.
+
+            try (final DatagramSocket socket = new DatagramSocket()) {
+
+                socket.connect(new InetSocketAddress("127.0.0.1", PORT));
+                socket.setSoTimeout(RECEIVE_TIMEOUT_MILLIS);
+
+                long count = 0;
+
+                while (System.nanoTime() - deadline < 0) {
+
+                    for (int i = 0; i < WINDOW; ++i) {
+                        socket.send(out);
+                    }
+
+                    try {
+                        for (int i = 0; i < WINDOW; ++i) {
+                            socket.receive(in);
+                            ++count;
+                        }
+                    } catch (SocketTimeoutException ex) {
+                        // The rest of the window was lost; start the next one.
+                    }
+
+                }
+
+                echoed.addAndGet(count);
+
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+
+        }
+
+    }
+
+    public static class PacketCounter {
+
+        private long packets;
+
+        public long increment() {
+            return ++packets;
+        }
+
+    }
+
+    public static class EchoHandler extends IoHandlerAdapter {
+
+        @Inject
+        private javax.inject.Provider<PacketCounter> packetCounterProvider;
+
+        @Override
+        public void messageReceived(final IoSession session, final Object message) throws Exception {
+            packetCounterProvider.get().increment();
+            final IoBuffer buffer = (IoBuffer) message;
+            session.write(buffer.duplicate());
+        }
+
+    }
+
+    private static class GuicyUdpEchoModule extends MinaModule {
+
+        @Override
+        protected void configureMINA() {
+
+            bind(IoAcceptor.class).to(NioDatagramAcceptor.class);
+            bind(IoHandler.class).to(EchoHandler.class);
+            bind(PacketCounter.class).in(MinaScopes.SESSION);
+
+            bindDatagramSessionRetention(30, TimeUnit.SECONDS);
+            bindFilter().named("retention").atBeginningOfChain().to(DatagramSessionRetentionFilter.class);
+
+            bindFilterChainBuilder();
+            bindSessionDataStructureFactory();
+            bindIoSession();
+
+        }
+
+    }
+
+}
@@ -25,8 +25,8 @@ public interface FilterNameBindingBuilder {
 	 *
 	 * @param name the name of the filter.
 	 *
-	 * @return an instance of {@link LinkedBindingBuilder}
+	 * @return an instance of {@link FilterSequenceBindingBuilder}
 	 */
-	FilterSequenceBindingBuilder named(final String name);
+	FilterSequenceBindingBuilder<IoFilter> named(final String name);
 
 }
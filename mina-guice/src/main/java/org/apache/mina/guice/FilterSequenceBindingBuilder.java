@@ -1,8 +1,10 @@
 package org.apache.mina.guice;
 
 import com.google.inject.binder.LinkedBindingBuilder;
+import com.google.inject.matcher.Matcher;
 import org.apache.mina.core.filterchain.IoFilter;
 import org.apache.mina.core.filterchain.IoFilterChain;
+import org.apache.mina.core.session.IoSession;
 import org.apache.mina.guice.filter.GuiceIoFilterChainBuilder;
 
 /**
@@ -13,6 +15,19 @@ import org.apache.mina.guice.filter.GuiceIoFilterChainBuilder;
  */
 public interface FilterSequenceBindingBuilder<FilterT extends IoFilter> {
 
+    /**
+     * Restricts the filter to sessions matching the given {@link Matcher}.  The matcher is
+     * evaluated once when the session's {@link IoFilterChain} is built and, if it does not
+     * match, the filter is omitted from that session's chain entirely.  Calling this more than
+     * once requires all given matchers to match.
+     *
+     * See {@link SessionMatchers} for matchers on the remote subnet, local port and session attributes.
+     *
+     * @param matcher the matcher
+     * @return this instance
+     */
+    FilterSequenceBindingBuilder<FilterT> when(Matcher<? super IoSession> matcher);
+
     /**
      * Places the filter at the beginning such that when the {@link IoFilterChain} is built,
      * it will be placed at the beginning.  This will move any existing filters further
@@ -32,25 +32,44 @@ public class IoSessionProvider implements Provider<IoSession> {
 
 	}
 
-    static void setSession(final IoSession session) {
+	/**
+	 * Enters the scope of the given session, returning the session previously in scope so that the
+	 * caller can restore it with {@link #restoreSession(IoSession, IoSession)}.  Scopes nest, as an event
+	 * for one session may write to or close another; the other session is then in scope only for the
+	 * duration of that call.
+	 *
+	 * @param session the session
+	 * @return the session previously in scope, or null if there was none
+	 */
+    static IoSession setSession(final IoSession session) {
 
 		if (session == null) throw new IllegalArgumentException("Session cannot be null.");
 
-		final IoSession tmp = IoSessionProvider.session.get();
-		if (tmp != null && !tmp.equals(session)) throw new OutOfScopeException("Already in scope.");
+		final IoSession previous = IoSessionProvider.session.get();
+		if (previous != session) IoSessionProvider.session.set(session);
 
-		IoSessionProvider.session.set(session);
+		return previous;
 
 	}
 
-	static void freeSession(final IoSession session) {
+	/**
+	 * Leaves the scope of the given session, restoring the session which was in scope when it was entered.
+	 *
+	 * @param session the session entered with {@link #setSession(IoSession)}
+	 * @param previous the session returned by {@link #setSession(IoSession)}
+	 */
+	static void restoreSession(final IoSession session, final IoSession previous) {
 
 		if (session == null) throw new IllegalArgumentException("Session cannot be null.");
 
 		final IoSession tmp = IoSessionProvider.session.get();
-		if (tmp != null && !tmp.equals(session)) throw new IllegalStateException("Already in a different session's scope.");
+		if (tmp != session) throw new IllegalStateException("Already in a different session's scope.");
 
-		IoSessionProvider.session.set(null);
+		if (previous == null) {
+			IoSessionProvider.session.remove();
+		} else if (previous != session) {
+			IoSessionProvider.session.set(previous);
+		}
 
 	}
 
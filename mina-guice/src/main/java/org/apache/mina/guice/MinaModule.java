@@ -1,6 +1,8 @@
 package org.apache.mina.guice;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.MembersInjector;
 import com.google.inject.TypeLiteral;
 import com.google.inject.binder.LinkedBindingBuilder;
@@ -21,15 +23,35 @@ import org.apache.mina.core.service.IoAcceptor;
 import org.apache.mina.core.service.IoHandler;
 import org.apache.mina.core.session.IdleStatus;
 import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.session.IoSessionDataStructureFactory;
 import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.handler.demux.MessageHandler;
+import org.apache.mina.guice.filter.DatagramSessionRetention;
+import org.apache.mina.guice.filter.DatagramSessionRetentionFilter;
 import org.apache.mina.guice.filter.GuiceIoFilterChainBuilder;
 import org.apache.mina.guice.filter.InjectProtocolCodecFactory;
+import org.apache.mina.guice.filter.RateLimit;
+import org.apache.mina.guice.filter.RateLimitFilter;
+import org.apache.mina.guice.filter.SessionWritability;
+import org.apache.mina.guice.filter.WriteBackpressure;
+import org.apache.mina.guice.filter.WriteBackpressureFilter;
+import org.apache.mina.guice.handler.InjectDemuxingIoHandler;
+import org.apache.mina.guice.jfr.MinaFlightRecorder;
+import org.apache.mina.guice.session.CompactIoSessionDataStructureFactory;
+import org.apache.mina.guice.session.IdleSessionReaper;
+import org.apache.mina.guice.session.SessionSpillStore;
+import org.apache.mina.guice.session.Spillable;
 
 import javax.inject.Provider;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configures MINA to integrate with Guice.  This sets up the basic Guice bindings
@@ -43,6 +65,10 @@ public abstract class MinaModule extends AbstractModule {
 
     public static final String ORIGINAL_FILTER_SEQUENCE = "org.apache.mina.guice.MinaModule.ORIGINAL_FILTER_SEQUENCE";
 
+    public static final String ORIGINAL_FILTER_CONDITIONS = "org.apache.mina.guice.MinaModule.ORIGINAL_FILTER_CONDITIONS";
+
+    public static final String MESSAGE_HANDLER_TYPES = "org.apache.mina.guice.MinaModule.MESSAGE_HANDLER_TYPES";
+
     private static final Matcher<Method> IO_FILTER_EXCEPTION_CAUGHT =
 		method("exceptionCaught", NextFilter.class, IoSession.class, Throwable.class); 
 
@@ -50,7 +76,7 @@ public abstract class MinaModule extends AbstractModule {
 		method("filterClose", NextFilter.class, IoSession.class); 
 
 	private static final Matcher<Method> IO_FILTER_FILTER_WRITE = 
-		method("filterWrite", NextFilter.class, IoSession.class); 
+		method("filterWrite", NextFilter.class, IoSession.class, WriteRequest.class); 
 
 	private static final Matcher<Method> IO_FILTER_MESSAGE_RECEIVED = 
 		method("messageReceived", NextFilter.class, IoSession.class, Object.class); 
@@ -65,7 +91,7 @@ public abstract class MinaModule extends AbstractModule {
 		method("sessionCreated", NextFilter.class, IoSession.class); 
 
 	private static final Matcher<Method> IO_FILTER_SESSION_IDLE = 
-		method("sessionIdle", NextFilter.class, IoSession.class); 
+		method("sessionIdle", NextFilter.class, IoSession.class, IdleStatus.class); 
 
 	private static final Matcher<Method> IO_FILTER_SESSION_OPENED = 
 		method("sessionOpened", NextFilter.class, IoSession.class); 
@@ -115,6 +141,10 @@ public abstract class MinaModule extends AbstractModule {
 
     private final LinkedList<String> filterNameList = new LinkedList<>();
 
+    private final Map<String, Matcher<? super IoSession>> filterConditions = new LinkedHashMap<>();
+
+    private final List<Class<?>> messageTypeList = new ArrayList<>();
+
 	/**
 	 * Sets up the basic MINA Guice integration.  This will bind the basic 
 	 * framework necessary to instantiate MINA.  Additionally, this will
@@ -127,6 +157,10 @@ public abstract class MinaModule extends AbstractModule {
 	@Override
 	protected final void configure() {
 
+        final ProcessorScope processorScope = new ProcessorScope();
+        binder().bindScope(ProcessorScoped.class, processorScope);
+        binder().bind(ProcessorScope.class).toInstance(processorScope);
+
 		binder().bindListener(IO_ACCEPTOR_MATCHER, new TypeListener() {
 
             @Override
@@ -134,6 +168,7 @@ public abstract class MinaModule extends AbstractModule {
 
                 final Provider<IoHandler> ioHandler = encounter.getProvider(IoHandler.class);
                 final Provider<IoFilterChainBuilder> guiceIoFilterChainBuilder = encounter.getProvider(IoFilterChainBuilder.class);
+                final Provider<Injector> injector = encounter.getProvider(Injector.class);
 
                 encounter.register(new InjectionListener<I>() {
 
@@ -142,6 +177,18 @@ public abstract class MinaModule extends AbstractModule {
                         final IoAcceptor acceptor = (IoAcceptor) injectee;
                         acceptor.setHandler(ioHandler.get());
                         acceptor.setFilterChainBuilder(guiceIoFilterChainBuilder.get());
+
+                        final Key<IoSessionDataStructureFactory> factoryKey = Key.get(IoSessionDataStructureFactory.class);
+
+                        if (injector.get().getExistingBinding(factoryKey) != null) {
+                            acceptor.setSessionDataStructureFactory(injector.get().getInstance(factoryKey));
+                        }
+
+                        final Key<IdleSessionReaper> idleSessionReaperKey = Key.get(IdleSessionReaper.class);
+
+                        if (injector.get().getExistingBinding(idleSessionReaperKey) != null) {
+                            injector.get().getInstance(idleSessionReaperKey).configure(acceptor);
+                        }
                     }
 
                 });
@@ -179,6 +226,14 @@ public abstract class MinaModule extends AbstractModule {
                 .annotatedWith(Names.named(ORIGINAL_FILTER_SEQUENCE))
                 .toInstance(filterNameList);
 
+        binder().bind(new TypeLiteral<Map<String, Matcher<? super IoSession>>>(){})
+                .annotatedWith(Names.named(ORIGINAL_FILTER_CONDITIONS))
+                .toInstance(filterConditions);
+
+        binder().bind(new TypeLiteral<List<Class<?>>>(){})
+                .annotatedWith(Names.named(MESSAGE_HANDLER_TYPES))
+                .toInstance(messageTypeList);
+
     }
 
 	/**
@@ -191,17 +246,49 @@ public abstract class MinaModule extends AbstractModule {
 	protected final FilterNameBindingBuilder bindFilter() {
 		return new FilterNameBindingBuilder() {
             @Override
-            public FilterSequenceBindingBuilder named(final String filterName) {
+            public FilterSequenceBindingBuilder<IoFilter> named(final String filterName) {
                 return bindFilterNamed(filterName);
             }
         };
 	}
 
-    private final FilterSequenceBindingBuilder bindFilterNamed(final String filterName) {
-        return new FilterSequenceBindingBuilder() {
+    private final FilterSequenceBindingBuilder<IoFilter> bindFilterNamed(final String filterName) {
+        return new FilterSequenceBindingBuilder<IoFilter>() {
+
+            private Matcher<? super IoSession> condition;
+
+            @Override
+            public FilterSequenceBindingBuilder<IoFilter> when(final Matcher<? super IoSession> matcher) {
+
+                if (matcher == null) throw new IllegalArgumentException("Matcher cannot be null.");
+
+                final Matcher<? super IoSession> existing = condition;
+
+                if (existing == null) {
+                    condition = matcher;
+                    return this;
+                }
+
+                condition = new AbstractMatcher<IoSession>() {
+
+                    @Override
+                    public boolean matches(final IoSession session) {
+                        return existing.matches(session) && matcher.matches(session);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "and(" + existing + ", " + matcher + ")";
+                    }
+
+                };
+
+                return this;
+
+            }
 
             @Override
-            public LinkedBindingBuilder<? extends IoFilter> atBeginningOfChain() {
+            public LinkedBindingBuilder<IoFilter> atBeginningOfChain() {
 
                 final int index = filterNameList.indexOf(filterName);
 
@@ -211,41 +298,45 @@ public abstract class MinaModule extends AbstractModule {
 
                 filterNameList.addFirst(filterName);
 
-                return binder().bind(IoFilter.class).annotatedWith(Names.named(filterName));
+                return bindNamedFilter();
 
             }
 
             @Override
-            public LinkedBindingBuilder<? extends IoFilter> after(String filterName) {
+            public LinkedBindingBuilder<IoFilter> after(String existingFilterName) {
 
-                final int index = filterNameList.indexOf(filterName);
+                checkNotBound();
+
+                final int index = filterNameList.indexOf(existingFilterName);
 
                 if (index < 0) {
-                    throw new IllegalArgumentException("Filter named \"" + filterName + "\" is not bound.");
+                    throw new IllegalArgumentException("Filter named \"" + existingFilterName + "\" is not bound.");
                 }
 
                 filterNameList.add(Math.min(index + 1, filterNameList.size()), filterName);
 
-                return binder().bind(IoFilter.class).annotatedWith(Names.named(filterName));
+                return bindNamedFilter();
 
             }
 
             @Override
-            public LinkedBindingBuilder<? extends IoFilter> before(String filterName) {
+            public LinkedBindingBuilder<IoFilter> before(String existingFilterName) {
 
-                final int index = filterNameList.indexOf(filterName);
+                checkNotBound();
+
+                final int index = filterNameList.indexOf(existingFilterName);
 
                 if (index < 0) {
-                    throw new IllegalArgumentException("Filter named \"" + filterName + "\" is not bound.");
+                    throw new IllegalArgumentException("Filter named \"" + existingFilterName + "\" is not bound.");
                 }
 
                 filterNameList.add(index, filterName);
 
-                return binder().bind(IoFilter.class).annotatedWith(Names.named(filterName));
+                return bindNamedFilter();
             }
 
             @Override
-            public LinkedBindingBuilder<? extends IoFilter> atAndOfFilterChain() {
+            public LinkedBindingBuilder<IoFilter> atAndOfFilterChain() {
 
                 final int index = filterNameList.indexOf(filterName);
 
@@ -255,6 +346,22 @@ public abstract class MinaModule extends AbstractModule {
 
                 filterNameList.addLast(filterName);
 
+                return bindNamedFilter();
+
+            }
+
+            private void checkNotBound() {
+                if (filterNameList.contains(filterName)) {
+                    throw new IllegalArgumentException("Filter named \"" + filterName + "\" is already bound.");
+                }
+            }
+
+            private LinkedBindingBuilder<IoFilter> bindNamedFilter() {
+
+                if (condition != null) {
+                    filterConditions.put(filterName, condition);
+                }
+
                 return binder().bind(IoFilter.class).annotatedWith(Names.named(filterName));
 
             }
@@ -278,6 +385,175 @@ public abstract class MinaModule extends AbstractModule {
         binder().bind(InjectProtocolCodecFactory.class);
     }
 
+    /**
+     * Binds the {@link IoSessionDataStructureFactory} to {@link CompactIoSessionDataStructureFactory}, which
+     * stores session attributes (including everything scoped with {@link MinaScopes#SESSION}) and pending
+     * writes in memory-lean structures.  Any binding of {@link IoSessionDataStructureFactory}, whether made
+     * here or directly, is installed on the {@link IoAcceptor}.
+     */
+    protected final void bindSessionDataStructureFactory() {
+        binder().bind(IoSessionDataStructureFactory.class).to(CompactIoSessionDataStructureFactory.class);
+    }
+
+    /**
+     * Binds the {@link WriteBackpressure} with the given watermarks and policy and binds
+     * {@link SessionWritability} in {@link MinaScopes#SESSION}.  The {@link WriteBackpressureFilter}
+     * must still be placed in the chain with {@link #bindFilter()}.
+     *
+     * @param highWatermark the scheduled write bytes at which a session becomes throttled
+     * @param lowWatermark the scheduled write bytes at which a throttled session is released
+     * @param policy the action taken when a session becomes throttled
+     */
+    protected final void bindWriteBackpressure(final long highWatermark, final long lowWatermark,
+                                               final WriteBackpressure.Policy policy) {
+        binder().bind(WriteBackpressure.class).toInstance(new WriteBackpressure(highWatermark, lowWatermark, policy));
+        binder().bind(SessionWritability.class).in(MinaScopes.SESSION);
+    }
+
+    /**
+     * Binds the given {@link RateLimit}.  The {@link RateLimitFilter} must still be placed in the chain with
+     * {@link #bindFilter()}, after any codec.
+     *
+     * @param rateLimit the rate limit
+     */
+    protected final void bindRateLimit(final RateLimit rateLimit) {
+        binder().bind(RateLimit.class).toInstance(rateLimit);
+    }
+
+    /**
+     * Binds a {@link SessionSpillStore} of the given capacity with its file in the system temporary directory.
+     *
+     * @see #bindSessionSpillStore(int, int, Path)
+     *
+     * @param capacity the size of the memory-mapped store, in bytes
+     * @param maxObjectSize the largest serialized object which will be spilled, in bytes
+     */
+    protected final void bindSessionSpillStore(final int capacity, final int maxObjectSize) {
+        bindSessionSpillStore(capacity, maxObjectSize, null);
+    }
+
+    /**
+     * Binds a {@link SessionSpillStore} of the given capacity.  Whenever the {@link IoHandler} finishes
+     * handling {@link IoHandler#sessionIdle(IoSession, IdleStatus)}, each object scoped with
+     * {@link MinaScopes#SESSION} which implements {@link Spillable} is moved into the store, and is restored
+     * the next time it is requested.  Space held by a session is released once the handler finishes handling
+     * {@link IoHandler#sessionClosed(IoSession)}.
+     *
+     * @param capacity the size of the memory-mapped store, in bytes
+     * @param maxObjectSize the largest serialized object which will be spilled, in bytes
+     * @param directory the directory in which to create the store's file, or null for the system temporary directory
+     */
+    protected final void bindSessionSpillStore(final int capacity, final int maxObjectSize, final Path directory) {
+
+        final SessionSpillStore sessionSpillStore = new SessionSpillStore(capacity, maxObjectSize, directory);
+        binder().bind(SessionSpillStore.class).toInstance(sessionSpillStore);
+
+        binder().bindInterceptor(Matchers.subclassesOf(IoHandler.class), IO_HANDLER_SESSION_IDLE, new MethodInterceptor() {
+            @Override
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                final Object result = invocation.proceed();
+                sessionSpillStore.spill((IoSession) invocation.getArguments()[0]);
+                return result;
+            }
+        });
+
+        binder().bindInterceptor(Matchers.subclassesOf(IoHandler.class), IO_HANDLER_SESSION_CLOSED, new MethodInterceptor() {
+            @Override
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                try {
+                    return invocation.proceed();
+                } finally {
+                    sessionSpillStore.release((IoSession) invocation.getArguments()[0]);
+                }
+            }
+        });
+
+    }
+
+    /**
+     * Binds the {@link MessageHandler} for the given message type, used by the {@link InjectDemuxingIoHandler}.
+     * The handler also receives messages of any subtype which has no handler of its own.
+     *
+     * @param messageType the message type
+     * @return a LinkedBindingBuilder see the EDSL examples at {@link com.google.inject.Binder}
+     * @throws IllegalArgumentException if a handler for the given type is already bound
+     */
+    protected final LinkedBindingBuilder<MessageHandler<?>> bindMessageHandler(final Class<?> messageType) {
+
+        if (messageTypeList.contains(messageType)) {
+            throw new IllegalArgumentException("Message handler for " + messageType + " is already bound.");
+        }
+
+        messageTypeList.add(messageType);
+        return binder().bind(InjectDemuxingIoHandler.MESSAGE_HANDLER_TYPE).annotatedWith(Names.named(messageType.getName()));
+
+    }
+
+    /**
+     * Binds the {@link IoHandler} to the {@link InjectDemuxingIoHandler}.
+     *
+     * @see #bindDemuxingIoHandler(Class)
+     */
+    protected final void bindDemuxingIoHandler() {
+        bindDemuxingIoHandler(InjectDemuxingIoHandler.class);
+    }
+
+    /**
+     * Binds the {@link IoHandler} to the given {@link InjectDemuxingIoHandler} type and constructs it eagerly,
+     * so the message routing table is built when the injector is created.
+     *
+     * @param handlerType the handler type, which may extend {@link InjectDemuxingIoHandler} to handle other events
+     */
+    protected final void bindDemuxingIoHandler(final Class<? extends InjectDemuxingIoHandler> handlerType) {
+        binder().bind(IoHandler.class).to(handlerType);
+        binder().bind(handlerType).asEagerSingleton();
+    }
+
+    /**
+     * Binds the {@link DatagramSessionRetention} with the given grace period.  Objects scoped with
+     * {@link MinaScopes#SESSION} in a connectionless session survive its expiry from the session recycler
+     * for the grace period, and are handed to the next session for the same addresses.  The
+     * {@link DatagramSessionRetentionFilter} must still be placed at the beginning of the chain with
+     * {@link #bindFilter()}.
+     *
+     * @param gracePeriod the grace period
+     * @param timeUnit the unit of the grace period
+     */
+    protected final void bindDatagramSessionRetention(final long gracePeriod, final TimeUnit timeUnit) {
+        binder().bind(DatagramSessionRetention.class).toInstance(new DatagramSessionRetention(gracePeriod, timeUnit));
+    }
+
+    /**
+     * Binds the given {@link IdleSessionReaper}, which sets the idle time on the {@link IoAcceptor}'s session
+     * configuration and closes sessions once the {@link IoHandler} has finished handling too many consecutive
+     * {@link IoHandler#sessionIdle(IoSession, IdleStatus)} notifications for them.
+     *
+     * @param idleSessionReaper the idle session reaper
+     */
+    protected final void bindIdleSessionReaper(final IdleSessionReaper idleSessionReaper) {
+
+        binder().bind(IdleSessionReaper.class).toInstance(idleSessionReaper);
+
+        binder().bindInterceptor(Matchers.subclassesOf(IoHandler.class), IO_HANDLER_SESSION_IDLE, new MethodInterceptor() {
+            @Override
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+
+                final long start = System.nanoTime();
+                final Object result = invocation.proceed();
+                final long elapsed = System.nanoTime() - start;
+
+                idleSessionReaper.sessionIdle(
+                    (IoSession) invocation.getArguments()[0],
+                    (IdleStatus) invocation.getArguments()[1],
+                    elapsed);
+
+                return result;
+
+            }
+        });
+
+    }
+
     /**
      * Binds the {@link IoSession} to the {@link IoSessionProvider}.
      */
@@ -310,12 +586,19 @@ public abstract class MinaModule extends AbstractModule {
 		public Object invoke(MethodInvocation invocation) throws Throwable {
 
 			final IoSession session = (IoSession) invocation.getArguments()[index];
+			final Object scopeEvent = MinaFlightRecorder.beginSessionScope(session, invocation.getMethod());
+			final Object filterEvent = invocation.getThis() instanceof IoFilter ?
+				MinaFlightRecorder.beginFilterInvocation(session, (IoFilter) invocation.getThis(), invocation.getMethod()) :
+				null;
+
+			final IoSession previous = IoSessionProvider.setSession(session);
 
 			try {
-				IoSessionProvider.setSession(session);
 				return invocation.proceed();
 			} finally {
-				IoSessionProvider.freeSession(session);
+				IoSessionProvider.restoreSession(session, previous);
+				MinaFlightRecorder.end(filterEvent);
+				MinaFlightRecorder.end(scopeEvent);
 			}
 
 		}
@@ -334,12 +617,15 @@ public abstract class MinaModule extends AbstractModule {
 		public Object invoke(MethodInvocation invocation) throws Throwable {
 
 			final IoSession session = ((IoFilterChain) invocation.getArguments()[index]).getSession();
+			final Object scopeEvent = MinaFlightRecorder.beginSessionScope(session, invocation.getMethod());
+
+			final IoSession previous = IoSessionProvider.setSession(session);
 
 			try {
-				IoSessionProvider.setSession(session);
 				return invocation.proceed();
 			} finally {
-				IoSessionProvider.freeSession(session);
+				IoSessionProvider.restoreSession(session, previous);
+				MinaFlightRecorder.end(scopeEvent);
 			}
 
 		}
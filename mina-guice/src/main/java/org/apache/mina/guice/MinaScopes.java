@@ -3,6 +3,10 @@ package org.apache.mina.guice;
 import com.google.inject.Injector;
 import org.apache.mina.core.future.ConnectFuture;
 import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.jfr.MinaFlightRecorder;
+import org.apache.mina.guice.session.SessionSpillStore;
+import org.apache.mina.guice.session.Spillable;
+import org.apache.mina.guice.session.SpilledObject;
 
 import com.google.inject.Key;
 import com.google.inject.Provider;
@@ -17,7 +21,7 @@ import java.util.concurrent.Callable;
 /**
  * A set of scopes for Mina.  This currently includes two scopes for the {@link IoSession}.  One which will ensure that
  * one instance of a type is stored in the {@link IoSession} and a second which will allow a proxy to be used
- * in {@link IoSession} instances.
+ * in {@link IoSession} instances.  See {@link ProcessorScope} for one instance per I/O processor thread.
  * 
  * @author "Patrick Twohig" patrick@namazustudios.com
  *
@@ -28,6 +32,9 @@ public class MinaScopes {
 	 * Lazily injects a type into the session on-demand.  The unscoped provided type is stored
      * in a session variable with the {@link Key} as the key.  Only one of the type is
      * scoped per session.
+     *
+     * If a {@link SessionSpillStore} is installed, {@link Spillable} instances may be moved off heap
+     * while the session is idle and are transparently restored here when next requested.
 	 */
 	public static final Scope SESSION = new Scope() {
 
@@ -111,15 +118,33 @@ public class MinaScopes {
 
         final IoSession session = IoSessionProvider.getSession();
 
-        T obj = (T) session.getAttribute(key);
+        Object attribute = session.getAttribute(key);
+
+        while (attribute instanceof SpilledObject) {
+            attribute = ((SpilledObject) attribute).restore(session, key);
+        }
+
+        T obj = (T) attribute;
         if (obj != null) return obj;
 
-        obj = unscoped.get();
+        obj = construct(session, key, unscoped);
         session.setAttribute(key, obj);
         return obj;
 
     }
 
+    static <T> T construct(final IoSession session, final Key<T> key, final Provider<T> unscoped) {
+
+        final Object constructionEvent = MinaFlightRecorder.beginScopedObjectConstruction(session, key);
+
+        try {
+            return unscoped.get();
+        } finally {
+            MinaFlightRecorder.end(constructionEvent);
+        }
+
+    }
+
     /**
 	 * Given the {@link ConnectFuture}, this will wait for the connection to succeed, and then execute the
      * given {@link Callable} immediately after a successful call.
@@ -161,11 +186,12 @@ public class MinaScopes {
 
         final IoSession ioSession = ioSessionCallable.call();
 
+        final IoSession previous = IoSessionProvider.setSession(ioSession);
+
         try {
-            IoSessionProvider.setSession(ioSession);
             return callable.call();
         } finally {
-            IoSessionProvider.freeSession(ioSession);
+            IoSessionProvider.restoreSession(ioSession, previous);
         }
 
     }
@@ -0,0 +1,141 @@
+package org.apache.mina.guice;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Provides one instance of the type per I/O processor thread.  Every session served by a given
+ * NioProcessor runs its events on that processor's thread, so those sessions share the instance
+ * without any synchronization.  This suits scratch buffers, {@link java.security.MessageDigest}s,
+ * compressors and counters which would otherwise be contended as singletons or duplicated
+ * in {@link MinaScopes#SESSION} scope.
+ *
+ * Instances are keyed by the calling thread, so they must not be shared with other threads.  Note
+ * that events delivered through an {@link org.apache.mina.filter.executor.ExecutorFilter} run on the
+ * executor's threads and will see those threads' instances instead.
+ *
+ * The {@link MinaModule} creates one of these for each injector, binds it to {@link ProcessorScoped}
+ * and binds it so that it may be injected.  The instances created for each binding are tracked so they
+ * may be aggregated for reporting with {@link #getInstances(Key)}, until the thread which requested
+ * them ends.
+ */
+public class ProcessorScope implements Scope {
+
+    private final ConcurrentMap<Key<?>, Instances<?>> instancesByKey = new ConcurrentHashMap<>();
+
+    @Override
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+
+        final Instances<T> instances = new Instances<>();
+        instancesByKey.put(key, instances);
+
+        final ThreadLocal<T> local = new ThreadLocal<T>() {
+            @Override
+            protected T initialValue() {
+                final T obj = MinaScopes.construct(null, key, unscoped);
+                instances.add(obj);
+                return obj;
+            }
+        };
+
+        return new Provider<T>() {
+
+            @Override
+            public T get() {
+                return local.get();
+            }
+
+            public String toString() {
+                return String.format("%s[%s]", key, ProcessorScope.this);
+            }
+
+        };
+
+    }
+
+    /**
+     * Gets every live instance of the given {@link Key}, one per thread which has requested it and has
+     * not yet ended.  This is useful for aggregating processor-local state, such as summing counters,
+     * for reporting.  Reading the instances is the caller's responsibility to make safe, for example by
+     * using atomic or volatile fields for anything read here.
+     *
+     * @param key the key
+     * @param <T> the type
+     * @return a snapshot of the instances
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getInstances(final Key<T> key) {
+        final Instances<T> instances = (Instances<T>) instancesByKey.get(key);
+        return instances == null ? Collections.<T>emptyList() : instances.snapshot();
+    }
+
+    public String toString() {
+        return "ProcessorScope";
+    }
+
+    private static final class Instances<T> {
+
+        private final Queue<Instance<T>> instances = new ConcurrentLinkedQueue<>();
+
+        public void add(final T obj) {
+            purge();
+            instances.add(new Instance<>(obj));
+        }
+
+        public List<T> snapshot() {
+
+            final List<T> snapshot = new ArrayList<>();
+
+            for (final Iterator<Instance<T>> it = instances.iterator(); it.hasNext();) {
+
+                final Instance<T> instance = it.next();
+
+                if (instance.isLive()) {
+                    snapshot.add(instance.obj);
+                } else {
+                    it.remove();
+                }
+
+            }
+
+            return snapshot;
+
+        }
+
+        private void purge() {
+            for (final Iterator<Instance<T>> it = instances.iterator(); it.hasNext();) {
+                if (!it.next().isLive()) it.remove();
+            }
+        }
+
+    }
+
+    private static final class Instance<T> {
+
+        private final WeakReference<Thread> thread = new WeakReference<>(Thread.currentThread());
+
+        private final T obj;
+
+        public Instance(final T obj) {
+            this.obj = obj;
+        }
+
+        public boolean isLive() {
+            final Thread thread = this.thread.get();
+            return thread != null && thread.isAlive();
+        }
+
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.apache.mina.guice;
+
+import javax.inject.Scope;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Applies the {@link ProcessorScope} bound by the {@link MinaModule} to a type or provider method.
+ */
+@Scope
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ProcessorScoped {}
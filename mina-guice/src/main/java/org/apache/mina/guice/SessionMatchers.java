@@ -0,0 +1,231 @@
+package org.apache.mina.guice;
+
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+import org.apache.mina.core.session.IoSession;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * A set of {@link Matcher} instances used to select the {@link IoSession} instances to which
+ * a conditionally bound filter applies.  See {@link FilterSequenceBindingBuilder#when(Matcher)}.
+ *
+ * Because these are standard Guice {@link Matcher} instances, they may be combined using
+ * {@link Matcher#and(Matcher)} and {@link Matcher#or(Matcher)}.
+ *
+ * Matchers are evaluated once, when the session's filter chain is built, so they should only
+ * depend on information which is available at the time the session is created.
+ */
+public final class SessionMatchers {
+
+    private SessionMatchers() {}
+
+    /**
+     * Matches sessions whose remote address falls within the given subnet.  The subnet is
+     * specified in CIDR notation, e.g. "10.0.0.0/8" or "fe80::/10".  A plain address with
+     * no prefix length matches only that address.
+     *
+     * @param cidr the subnet in CIDR notation
+     * @return the {@link Matcher}
+     * @throws IllegalArgumentException if the subnet cannot be parsed
+     */
+    public static Matcher<IoSession> remoteAddressIn(final String cidr) {
+
+        final Subnet subnet = Subnet.parse(cidr);
+
+        return new AbstractMatcher<IoSession>() {
+
+            @Override
+            public boolean matches(final IoSession session) {
+                return subnet.contains(session.getRemoteAddress());
+            }
+
+            @Override
+            public String toString() {
+                return "remoteAddressIn(" + cidr + ")";
+            }
+
+        };
+
+    }
+
+    /**
+     * Matches sessions whose local address is bound to one of the given ports.
+     *
+     * @param ports the local ports
+     * @return the {@link Matcher}
+     */
+    public static Matcher<IoSession> localPort(final int ... ports) {
+
+        final int[] sorted = ports.clone();
+        Arrays.sort(sorted);
+
+        return new AbstractMatcher<IoSession>() {
+
+            @Override
+            public boolean matches(final IoSession session) {
+                final SocketAddress address = session.getLocalAddress();
+                return address instanceof InetSocketAddress &&
+                       Arrays.binarySearch(sorted, ((InetSocketAddress) address).getPort()) >= 0;
+            }
+
+            @Override
+            public String toString() {
+                return "localPort(" + Arrays.toString(sorted) + ")";
+            }
+
+        };
+
+    }
+
+    /**
+     * Matches sessions which contain the given attribute, regardless of its value.
+     *
+     * @param key the attribute key
+     * @return the {@link Matcher}
+     */
+    public static Matcher<IoSession> hasAttribute(final Object key) {
+
+        if (key == null) throw new IllegalArgumentException("Attribute key cannot be null.");
+
+        return new AbstractMatcher<IoSession>() {
+
+            @Override
+            public boolean matches(final IoSession session) {
+                return session.containsAttribute(key);
+            }
+
+            @Override
+            public String toString() {
+                return "hasAttribute(" + key + ")";
+            }
+
+        };
+
+    }
+
+    /**
+     * Matches sessions which contain the given attribute set to the given value.
+     *
+     * @param key the attribute key
+     * @param value the attribute value
+     * @return the {@link Matcher}
+     */
+    public static Matcher<IoSession> attributeEquals(final Object key, final Object value) {
+
+        if (key == null) throw new IllegalArgumentException("Attribute key cannot be null.");
+
+        return new AbstractMatcher<IoSession>() {
+
+            @Override
+            public boolean matches(final IoSession session) {
+                final Object attribute = session.getAttribute(key);
+                return value == null ? attribute == null : value.equals(attribute);
+            }
+
+            @Override
+            public String toString() {
+                return "attributeEquals(" + key + ", " + value + ")";
+            }
+
+        };
+
+    }
+
+    /**
+     * Inverts the given {@link Matcher}.
+     *
+     * @param matcher the matcher to invert
+     * @return the {@link Matcher}
+     */
+    public static Matcher<IoSession> not(final Matcher<? super IoSession> matcher) {
+
+        return new AbstractMatcher<IoSession>() {
+
+            @Override
+            public boolean matches(final IoSession session) {
+                return !matcher.matches(session);
+            }
+
+            @Override
+            public String toString() {
+                return "not(" + matcher + ")";
+            }
+
+        };
+
+    }
+
+    private static final class Subnet {
+
+        private final byte[] network;
+
+        private final int prefixLength;
+
+        private Subnet(final byte[] network, final int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        public boolean contains(final SocketAddress socketAddress) {
+
+            if (!(socketAddress instanceof InetSocketAddress)) return false;
+
+            final InetAddress inetAddress = ((InetSocketAddress) socketAddress).getAddress();
+            if (inetAddress == null) return false;
+
+            final byte[] address = inetAddress.getAddress();
+            if (address.length != network.length) return false;
+
+            final int whole = prefixLength / 8;
+
+            for (int i = 0; i < whole; ++i) {
+                if (address[i] != network[i]) return false;
+            }
+
+            final int remainder = prefixLength % 8;
+            if (remainder == 0) return true;
+
+            final int mask = (0xFF << (8 - remainder)) & 0xFF;
+            return (address[whole] & mask) == (network[whole] & mask);
+
+        }
+
+        public static Subnet parse(final String cidr) {
+
+            if (cidr == null) throw new IllegalArgumentException("Subnet cannot be null.");
+
+            final int slash = cidr.indexOf('/');
+            final String host = slash < 0 ? cidr : cidr.substring(0, slash);
+
+            final byte[] network;
+
+            try {
+                network = InetAddress.getByName(host).getAddress();
+            } catch (UnknownHostException ex) {
+                throw new IllegalArgumentException("Invalid subnet \"" + cidr + "\"", ex);
+            }
+
+            final int prefixLength;
+
+            try {
+                prefixLength = slash < 0 ? network.length * 8 : Integer.parseInt(cidr.substring(slash + 1));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid subnet \"" + cidr + "\"", ex);
+            }
+
+            if (prefixLength < 0 || prefixLength > network.length * 8) {
+                throw new IllegalArgumentException("Invalid prefix length in subnet \"" + cidr + "\"");
+            }
+
+            return new Subnet(network, prefixLength);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.apache.mina.guice.filter;
+
+import com.google.inject.Key;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaModule;
+import org.apache.mina.guice.MinaScopes;
+
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retains the objects scoped with {@link MinaScopes#SESSION} for connectionless sessions after
+ * they close, for example when the session recycler of a
+ * {@link org.apache.mina.transport.socket.nio.NioDatagramAcceptor} expires them.  If a new session
+ * for the same local and remote address is created within the grace period, the retained objects
+ * are placed back in it rather than being constructed again.
+ *
+ * Retained state is purged lazily, at most once per grace period, as sessions close.  Retained objects
+ * which need the {@link IoSession} should obtain it through {@link MinaModule#bindIoSessionProxy()}
+ * rather than holding the closed session directly.
+ *
+ * An instance is bound as a singleton by {@link MinaModule#bindDatagramSessionRetention(long, TimeUnit)}
+ * and applied by the {@link DatagramSessionRetentionFilter}.
+ */
+public class DatagramSessionRetention {
+
+    private final long gracePeriodNanos;
+
+    private final ConcurrentMap<List<SocketAddress>, Retained> retained = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextPurge = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong retainedSessions = new AtomicLong();
+
+    private final AtomicLong restoredSessions = new AtomicLong();
+
+    /**
+     * Creates the retention with the given grace period.
+     *
+     * @param gracePeriod the grace period
+     * @param timeUnit the unit of the grace period
+     */
+    public DatagramSessionRetention(final long gracePeriod, final TimeUnit timeUnit) {
+        if (gracePeriod <= 0) throw new IllegalArgumentException("Grace period must be positive.");
+        this.gracePeriodNanos = timeUnit.toNanos(gracePeriod);
+    }
+
+    public long getGracePeriod(final TimeUnit timeUnit) {
+        return timeUnit.convert(gracePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of sessions whose state is currently retained.
+     *
+     * @return the retained session count
+     */
+    public int getRetainedSessionCount() {
+        return retained.size();
+    }
+
+    /**
+     * Gets the total number of sessions whose state has been retained.
+     *
+     * @return the retained session total
+     */
+    public long getRetainedSessionTotal() {
+        return retainedSessions.get();
+    }
+
+    /**
+     * Gets the total number of sessions whose state has been restored.
+     *
+     * @return the restored session total
+     */
+    public long getRestoredSessionTotal() {
+        return restoredSessions.get();
+    }
+
+    /**
+     * Retains the session-scoped state of the given session, if it is connectionless.
+     *
+     * @param session the closing session
+     */
+    public void retain(final IoSession session) {
+
+        if (!session.getTransportMetadata().isConnectionless()) return;
+
+        final long now = System.nanoTime();
+        purge(now);
+
+        final Map<Object, Object> attributes = new HashMap<>();
+
+        for (final Object key : session.getAttributeKeys()) {
+            if (!(key instanceof Key)) continue;
+            final Object value = session.getAttribute(key);
+            if (value != null) attributes.put(key, value);
+        }
+
+        if (attributes.isEmpty()) return;
+
+        retained.put(addressKey(session), new Retained(attributes, now + gracePeriodNanos));
+        retainedSessions.incrementAndGet();
+
+    }
+
+    /**
+     * Restores any state retained for the given session's addresses.  Attributes already set on the
+     * session are left untouched.
+     *
+     * @param session the new session
+     */
+    public void restore(final IoSession session) {
+
+        if (retained.isEmpty() || !session.getTransportMetadata().isConnectionless()) return;
+
+        final Retained state = retained.remove(addressKey(session));
+        if (state == null || state.deadline - System.nanoTime() < 0) return;
+
+        for (final Map.Entry<Object, Object> entry : state.attributes.entrySet()) {
+            session.setAttributeIfAbsent(entry.getKey(), entry.getValue());
+        }
+
+        restoredSessions.incrementAndGet();
+
+    }
+
+    private void purge(final long now) {
+
+        final long next = nextPurge.get();
+        if (now - next < 0 || !nextPurge.compareAndSet(next, now + gracePeriodNanos)) return;
+
+        final Iterator<Retained> iterator = retained.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().deadline - now < 0) iterator.remove();
+        }
+
+    }
+
+    private static List<SocketAddress> addressKey(final IoSession session) {
+        return Arrays.asList(session.getLocalAddress(), session.getRemoteAddress());
+    }
+
+    private static final class Retained {
+
+        private final Map<Object, Object> attributes;
+
+        private final long deadline;
+
+        public Retained(final Map<Object, Object> attributes, final long deadline) {
+            this.attributes = attributes;
+            this.deadline = deadline;
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.FilterSequenceBindingBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Applies the {@link DatagramSessionRetention}.  The retained state is restored as the session is
+ * created and retained once every later filter and the handler have processed the close.  This
+ * should be bound with {@link FilterSequenceBindingBuilder#atBeginningOfChain()} so that state is
+ * restored before any other filter can construct it anew.
+ */
+@Singleton
+public class DatagramSessionRetentionFilter extends IoFilterAdapter {
+
+    private final DatagramSessionRetention retention;
+
+    @Inject
+    public DatagramSessionRetentionFilter(final DatagramSessionRetention retention) {
+        this.retention = retention;
+    }
+
+    @Override
+    public void sessionCreated(final NextFilter nextFilter, final IoSession session) throws Exception {
+        retention.restore(session);
+        nextFilter.sessionCreated(session);
+    }
+
+    @Override
+    public void sessionClosed(final NextFilter nextFilter, final IoSession session) throws Exception {
+        try {
+            nextFilter.sessionClosed(session);
+        } finally {
+            retention.retain(session);
+        }
+    }
+
+}
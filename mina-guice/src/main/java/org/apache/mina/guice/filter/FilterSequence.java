@@ -0,0 +1,163 @@
+package org.apache.mina.guice.filter;
+
+import com.google.inject.matcher.Matcher;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.FilterSequenceBindingBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, ordered sequence of filter names along with any conditions bound with
+ * {@link FilterSequenceBindingBuilder#when(Matcher)}.
+ *
+ * Each distinct condition is evaluated exactly once per session.  The results form a bit mask
+ * which selects one of a small number of chain variants.  Variants are computed the first time
+ * a given combination is seen and shared by every session with the same combination, so sessions
+ * only pass through the filters which actually apply to them.
+ */
+public final class FilterSequence {
+
+    /**
+     * The maximum number of distinct conditions which may be used in a single sequence.
+     */
+    public static final int MAX_CONDITIONS = Long.SIZE;
+
+    private final List<String> filterNames;
+
+    private final Map<String, Matcher<? super IoSession>> conditions;
+
+    private final List<Matcher<? super IoSession>> distinctConditions;
+
+    private final long[] requiredMasks;
+
+    private final ConcurrentMap<Long, List<String>> variants = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a sequence with no conditions.
+     *
+     * @param filterNames the filter names, in order
+     */
+    public FilterSequence(final List<String> filterNames) {
+        this(filterNames, Collections.<String, Matcher<? super IoSession>>emptyMap());
+    }
+
+    /**
+     * Creates a sequence from the given names and conditions.
+     *
+     * @param filterNames the filter names, in order
+     * @param conditions the conditions, keyed by filter name; filters absent from the map always apply
+     * @throws IllegalArgumentException if a condition references a filter not in the sequence, or if
+     *                                  there are more than {@link #MAX_CONDITIONS} distinct conditions
+     */
+    public FilterSequence(final List<String> filterNames,
+                          final Map<String, ? extends Matcher<? super IoSession>> conditions) {
+
+        this.filterNames = Collections.unmodifiableList(new ArrayList<>(filterNames));
+        this.conditions = Collections.unmodifiableMap(new LinkedHashMap<String, Matcher<? super IoSession>>(conditions));
+
+        if (!this.filterNames.containsAll(this.conditions.keySet())) {
+            throw new IllegalArgumentException("Conditions reference unbound filters: " + this.conditions.keySet());
+        }
+
+        final List<Matcher<? super IoSession>> distinctConditions = new ArrayList<>();
+        requiredMasks = new long[this.filterNames.size()];
+
+        for (int i = 0; i < requiredMasks.length; ++i) {
+
+            final Matcher<? super IoSession> condition = this.conditions.get(this.filterNames.get(i));
+            if (condition == null) continue;
+
+            int bit = distinctConditions.indexOf(condition);
+
+            if (bit < 0) {
+
+                bit = distinctConditions.size();
+
+                if (bit >= MAX_CONDITIONS) {
+                    throw new IllegalArgumentException("At most " + MAX_CONDITIONS + " distinct conditions allowed.");
+                }
+
+                distinctConditions.add(condition);
+
+            }
+
+            requiredMasks[i] = 1L << bit;
+
+        }
+
+        this.distinctConditions = Collections.unmodifiableList(distinctConditions);
+
+        if (distinctConditions.isEmpty()) {
+            variants.put(0L, this.filterNames);
+        }
+
+    }
+
+    /**
+     * Gets all filter names in this sequence, regardless of condition.
+     *
+     * @return an unmodifiable list of filter names
+     */
+    public List<String> getFilterNames() {
+        return filterNames;
+    }
+
+    /**
+     * Gets the conditions, keyed by filter name.
+     *
+     * @return an unmodifiable map of conditions
+     */
+    public Map<String, Matcher<? super IoSession>> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * Selects the filter names which apply to the given session.
+     *
+     * @param session the session
+     * @return an unmodifiable list of filter names, in order
+     */
+    public List<String> select(final IoSession session) {
+
+        long mask = 0;
+
+        for (int bit = 0; bit < distinctConditions.size(); ++bit) {
+            if (distinctConditions.get(bit).matches(session)) mask |= 1L << bit;
+        }
+
+        final List<String> existing = variants.get(mask);
+        if (existing != null) return existing;
+
+        final List<String> variant = new ArrayList<>(filterNames.size());
+
+        for (int i = 0; i < requiredMasks.length; ++i) {
+            if ((requiredMasks[i] & mask) == requiredMasks[i]) variant.add(filterNames.get(i));
+        }
+
+        final List<String> computed = Collections.unmodifiableList(variant);
+        final List<String> raced = variants.putIfAbsent(mask, computed);
+        return raced == null ? computed : raced;
+
+    }
+
+    /**
+     * Gets the number of chain variants computed so far.
+     *
+     * @return the variant count
+     */
+    public int getVariantCount() {
+        return variants.size();
+    }
+
+    @Override
+    public String toString() {
+        return "FilterSequence" + filterNames + " conditions=" + conditions;
+    }
+
+}
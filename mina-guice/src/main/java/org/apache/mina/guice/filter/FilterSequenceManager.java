@@ -0,0 +1,298 @@
+package org.apache.mina.guice.filter;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.matcher.Matcher;
+import com.google.inject.name.Names;
+import org.apache.mina.core.filterchain.IoFilter;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.filterchain.IoFilterChain;
+import org.apache.mina.core.service.IoService;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.guice.MinaModule;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link FilterSequence} used by the {@link GuiceIoFilterChainBuilder}.  The
+ * sequence starts out as the one configured in {@link MinaModule} and may be replaced at runtime
+ * by publishing a new immutable {@link FilterSequence}.
+ *
+ * Publishing swaps a single reference, so sessions created afterwards pick up the new sequence
+ * immediately and building a session's chain never takes a lock.  Existing sessions keep their
+ * chain unless explicitly migrated with {@link #migrate(IoSession)} or {@link #migrateAll(IoService)}.
+ *
+ * Every filter named in a published sequence must be bound as an {@link IoFilter} annotated with
+ * {@link Named}.  Filters which should only be switched on at runtime, such as a debug logging
+ * filter, may be bound that way directly without adding them to the original sequence.
+ */
+@Singleton
+public class FilterSequenceManager {
+
+    /**
+     * The name of the transient filter used to migrate a session's chain on its processor thread.
+     */
+    public static final String MIGRATION_FILTER_NAME = "org.apache.mina.guice.filter.FilterSequenceManager.MIGRATION";
+
+    private final Injector injector;
+
+    private final AtomicReference<FilterSequence> current;
+
+    private final Set<String> knownFilterNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final MigrationFilter migrationFilter = new MigrationFilter();
+
+    @Inject
+    public FilterSequenceManager(
+            final Injector injector,
+            @Named(MinaModule.ORIGINAL_FILTER_SEQUENCE) final List<String> filterNames,
+            @Named(MinaModule.ORIGINAL_FILTER_CONDITIONS) final Map<String, Matcher<? super IoSession>> filterConditions) {
+        final FilterSequence original = new FilterSequence(filterNames, filterConditions);
+        this.injector = injector;
+        this.current = new AtomicReference<>(original);
+        this.knownFilterNames.addAll(original.getFilterNames());
+    }
+
+    /**
+     * Gets the current {@link FilterSequence}.
+     *
+     * @return the current sequence
+     */
+    public FilterSequence getFilterSequence() {
+        return current.get();
+    }
+
+    /**
+     * Publishes the given {@link FilterSequence}.  Sessions created after this call returns will
+     * use the new sequence.
+     *
+     * @param filterSequence the new sequence
+     * @return the previous sequence
+     * @throws IllegalArgumentException if any filter in the sequence is not bound
+     */
+    public FilterSequence publish(final FilterSequence filterSequence) {
+
+        for (final String filterName : filterSequence.getFilterNames()) {
+            if (injector.getExistingBinding(key(filterName)) == null) {
+                throw new IllegalArgumentException("Filter named \"" + filterName + "\" is not bound.");
+            }
+        }
+
+        knownFilterNames.addAll(filterSequence.getFilterNames());
+        return current.getAndSet(filterSequence);
+
+    }
+
+    /**
+     * Publishes a new sequence with the given filter names.  Conditions from the current sequence
+     * are retained for any filter which remains in the sequence.
+     *
+     * @param filterNames the filter names, in order
+     * @return the previous sequence
+     * @throws IllegalArgumentException if any filter in the sequence is not bound
+     */
+    public FilterSequence publish(final List<String> filterNames) {
+
+        final Map<String, Matcher<? super IoSession>> conditions = new LinkedHashMap<>();
+
+        for (final Map.Entry<String, Matcher<? super IoSession>> entry : current.get().getConditions().entrySet()) {
+            if (filterNames.contains(entry.getKey())) conditions.put(entry.getKey(), entry.getValue());
+        }
+
+        return publish(new FilterSequence(filterNames, conditions));
+
+    }
+
+    /**
+     * Schedules the migration of the given session's chain to the current sequence.  The chain
+     * is modified on the session's processor thread when it next receives a message, is idle,
+     * or completes a write, using {@link IoFilterChain} add and remove operations.  Filters which the
+     * new sequence places in a different order are removed and added again.  Filters not managed by
+     * any published sequence are left untouched.
+     *
+     * @param session the session
+     */
+    public void migrate(final IoSession session) {
+
+        final IoFilterChain chain = session.getFilterChain();
+
+        // The chain's own operations synchronize on the chain, so this makes the check and add atomic.
+
+        synchronized (chain) {
+            if (!chain.contains(MIGRATION_FILTER_NAME)) chain.addFirst(MIGRATION_FILTER_NAME, migrationFilter);
+        }
+
+    }
+
+    /**
+     * Schedules the migration of all sessions managed by the given {@link IoService}.
+     *
+     * @see #migrate(IoSession)
+     *
+     * @param ioService the service
+     */
+    public void migrateAll(final IoService ioService) {
+        for (final IoSession session : ioService.getManagedSessions().values()) {
+            migrate(session);
+        }
+    }
+
+    IoFilter getFilter(final String filterName) {
+        return injector.getInstance(key(filterName));
+    }
+
+    private void apply(final IoSession session, final FilterSequence filterSequence) {
+
+        final IoFilterChain chain = session.getFilterChain();
+        final List<String> desired = filterSequence.select(session);
+
+        for (final String filterName : knownFilterNames) {
+            if (!desired.contains(filterName) && chain.contains(filterName)) {
+                chain.remove(filterName);
+            }
+        }
+
+        // Filters which survive out of order are removed and added again in place, keeping the longest
+        // run of them which is already in order so that as few as possible are disturbed.
+
+        final List<String> present = new ArrayList<>();
+
+        for (final IoFilterChain.Entry entry : chain.getAll()) {
+            if (desired.contains(entry.getName())) present.add(entry.getName());
+        }
+
+        final Set<String> inOrder = longestInOrder(present, desired);
+
+        for (final String filterName : present) {
+            if (!inOrder.contains(filterName)) chain.remove(filterName);
+        }
+
+        final List<String> missing = new ArrayList<>();
+
+        for (final String filterName : desired) {
+            if (!chain.contains(filterName)) missing.add(filterName);
+        }
+
+        for (final String filterName : missing) {
+
+            final int index = desired.indexOf(filterName);
+            final IoFilter filter = getFilter(filterName);
+
+            if (index > 0 && chain.contains(desired.get(index - 1))) {
+                chain.addAfter(desired.get(index - 1), filterName, filter);
+            } else if (index + 1 < desired.size() && chain.contains(desired.get(index + 1))) {
+                chain.addBefore(desired.get(index + 1), filterName, filter);
+            } else {
+                chain.addLast(filterName, filter);
+            }
+
+        }
+
+    }
+
+    private static Set<String> longestInOrder(final List<String> present, final List<String> desired) {
+
+        final int[] length = new int[present.size()];
+        final int[] previous = new int[present.size()];
+        int last = -1;
+
+        for (int i = 0; i < length.length; ++i) {
+
+            final int position = desired.indexOf(present.get(i));
+            length[i] = 1;
+            previous[i] = -1;
+
+            for (int j = 0; j < i; ++j) {
+                if (desired.indexOf(present.get(j)) < position && length[j] + 1 > length[i]) {
+                    length[i] = length[j] + 1;
+                    previous[i] = j;
+                }
+            }
+
+            if (last < 0 || length[i] > length[last]) last = i;
+
+        }
+
+        final Set<String> inOrder = new HashSet<>();
+        for (int i = last; i >= 0; i = previous[i]) inOrder.add(present.get(i));
+
+        return inOrder;
+
+    }
+
+    private static Key<IoFilter> key(final String filterName) {
+        return Key.get(IoFilter.class, Names.named(filterName));
+    }
+
+    private final class MigrationFilter extends IoFilterAdapter {
+
+        // The chain is changed while this filter is still in it, so the event is forwarded through
+        // this entry's live successor and reaches the new chain.  This filter only removes itself
+        // once the event has passed, as a removed entry keeps pointing at its stale successor.
+
+        @Override
+        public void messageReceived(final NextFilter nextFilter, final IoSession session, final Object message) throws Exception {
+            final FilterSequence applied = migrateNow(session);
+            try {
+                nextFilter.messageReceived(session, message);
+            } finally {
+                finish(session, applied);
+            }
+        }
+
+        @Override
+        public void messageSent(final NextFilter nextFilter, final IoSession session, final WriteRequest writeRequest) throws Exception {
+            final FilterSequence applied = migrateNow(session);
+            try {
+                nextFilter.messageSent(session, writeRequest);
+            } finally {
+                finish(session, applied);
+            }
+        }
+
+        @Override
+        public void sessionIdle(final NextFilter nextFilter, final IoSession session, final IdleStatus status) throws Exception {
+            final FilterSequence applied = migrateNow(session);
+            try {
+                nextFilter.sessionIdle(session, status);
+            } finally {
+                finish(session, applied);
+            }
+        }
+
+        private FilterSequence migrateNow(final IoSession session) {
+            final FilterSequence filterSequence = current.get();
+            apply(session, filterSequence);
+            return filterSequence;
+        }
+
+        private void finish(final IoSession session, final FilterSequence applied) {
+
+            final IoFilterChain chain = session.getFilterChain();
+
+            synchronized (chain) {
+                if (chain.contains(MIGRATION_FILTER_NAME)) chain.remove(MIGRATION_FILTER_NAME);
+            }
+
+            // A migration requested while this one was in progress found this filter still in place.
+
+            if (current.get() != applied) migrate(session);
+
+        }
+
+    }
+
+}
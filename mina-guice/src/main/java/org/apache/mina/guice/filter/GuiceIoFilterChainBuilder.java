@@ -3,19 +3,18 @@ package org.apache.mina.guice.filter;
 import java.util.List;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.inject.Singleton;
 
-import com.google.inject.Injector;
-import com.google.inject.Key;
-import com.google.inject.name.Names;
+import com.google.inject.matcher.Matcher;
 import org.apache.mina.core.filterchain.IoFilter;
 import org.apache.mina.core.filterchain.IoFilterChain;
 import org.apache.mina.core.filterchain.IoFilterChainBuilder;
 
 import com.google.inject.Provider;
 import org.apache.mina.guice.FilterNameBindingBuilder;
+import org.apache.mina.guice.FilterSequenceBindingBuilder;
 import org.apache.mina.guice.MinaModule;
+import org.apache.mina.guice.jfr.MinaFlightRecorder;
 
 /**
  * This type is automatically configured by the {@link MinaModule}. It will
@@ -27,6 +26,12 @@ import org.apache.mina.guice.MinaModule;
  * Filters are inserted in the filter chain in the order in which they are bound and are
  * named according to the value passed to {@link FilterNameBindingBuilder#named(String)}.
  *
+ * Filters bound with {@link FilterSequenceBindingBuilder#when(Matcher)} are only added to
+ * the chains of sessions matching the condition.  See {@link FilterSequence}.
+ *
+ * The sequence itself is read from the {@link FilterSequenceManager} each time a chain is
+ * built, so a sequence published at runtime applies to every session created afterwards.
+ *
  * @author "Patrick Twohig" patrick@namazustudios.com
  * 
  */
@@ -34,19 +39,23 @@ import org.apache.mina.guice.MinaModule;
 public class GuiceIoFilterChainBuilder implements IoFilterChainBuilder {
 
 	@Inject
-	private Injector injector;
-
-	@Inject
-	@Named(MinaModule.ORIGINAL_FILTER_SEQUENCE)
-	private List<String> filterNames;
+	private FilterSequenceManager filterSequenceManager;
 
 	@Override
 	public void buildFilterChain(final IoFilterChain chain) throws Exception {
 
-		for (final String filterName : filterNames) {
-			final Key<IoFilter> ioFilterKey = Key.get(IoFilter.class, Names.named(filterName));
-			final IoFilter ioFilter = injector.getInstance(ioFilterKey);
-			chain.addLast(filterName, ioFilter);
+		final Object buildEvent = MinaFlightRecorder.beginFilterChainBuild(chain.getSession());
+		final FilterSequence filterSequence = filterSequenceManager.getFilterSequence();
+		final List<String> filterNames = filterSequence.select(chain.getSession());
+
+		try {
+			for (final String filterName : filterNames) {
+				final IoFilter ioFilter = filterSequenceManager.getFilter(filterName);
+				chain.addLast(filterName, ioFilter);
+			}
+		} finally {
+			MinaFlightRecorder.setFilterCount(buildEvent, filterNames.size());
+			MinaFlightRecorder.end(buildEvent);
 		}
 
 	}
@@ -0,0 +1,235 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Decodes frames consisting of a big-endian length header followed by that many bytes of payload.
+ * Each frame is emitted as a read-only {@link IoBuffer} slice of the payload, without copying.
+ *
+ * Frames lying entirely within a received buffer are sliced directly from it.  Only a partial frame
+ * left at the end of a received buffer is copied, into a per-session cumulation array.  A frame
+ * completed in the cumulation array is sliced from that array.  Bytes in the array are never
+ * overwritten once a frame has been sliced from it: the array is only compacted in place if nothing
+ * was sliced since it was last compacted, and is otherwise replaced.  Frames therefore stay valid
+ * for as long as a handler keeps them.
+ *
+ * Per-session state is kept in a session attribute, so a single instance may be bound as a singleton
+ * for use with the {@link InjectProtocolCodecFactory}.
+ */
+@Singleton
+public class LengthPrefixedFrameDecoder implements ProtocolDecoder {
+
+    /**
+     * The default maximum payload length of a single frame.
+     */
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 1 << 20;
+
+    private static final AttributeKey CUMULATION = new AttributeKey(LengthPrefixedFrameDecoder.class, "cumulation");
+
+    private static final int INITIAL_CUMULATION_SIZE = 256;
+
+    private final int headerLength;
+
+    private final int maxFrameLength;
+
+    /**
+     * Creates a decoder with a four byte header and {@link #DEFAULT_MAX_FRAME_LENGTH}.
+     */
+    @Inject
+    public LengthPrefixedFrameDecoder() {
+        this(4, DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param headerLength the length of the header in bytes; one of 1, 2 or 4
+     * @param maxFrameLength the maximum payload length of a single frame
+     */
+    public LengthPrefixedFrameDecoder(final int headerLength, final int maxFrameLength) {
+
+        if (headerLength != 1 && headerLength != 2 && headerLength != 4) {
+            throw new IllegalArgumentException("Header length must be 1, 2 or 4: " + headerLength);
+        }
+
+        if (maxFrameLength < 0) throw new IllegalArgumentException("Max frame length must not be negative.");
+
+        this.headerLength = headerLength;
+        this.maxFrameLength = maxFrameLength;
+
+    }
+
+    @Override
+    public void decode(final IoSession session, final IoBuffer in, final ProtocolDecoderOutput out) throws Exception {
+
+        final Cumulation cumulation = (Cumulation) session.getAttribute(CUMULATION);
+
+        if (cumulation != null && cumulation.compact() > 0 && !completePending(cumulation, in, out)) {
+            return;
+        }
+
+        while (in.remaining() >= headerLength) {
+
+            final int frameLength = checkLength(readLength(in));
+            if (in.remaining() < headerLength + frameLength) break;
+
+            in.skip(headerLength);
+            out.write(in.getSlice(frameLength).asReadOnlyBuffer());
+
+        }
+
+        if (in.hasRemaining()) {
+
+            final Cumulation target;
+
+            if (cumulation == null) {
+                target = new Cumulation();
+                session.setAttribute(CUMULATION, target);
+            } else {
+                target = cumulation;
+            }
+
+            target.append(in, in.remaining());
+
+        }
+
+    }
+
+    @Override
+    public void finishDecode(final IoSession session, final ProtocolDecoderOutput out) throws Exception {}
+
+    @Override
+    public void dispose(final IoSession session) throws Exception {
+        session.removeAttribute(CUMULATION);
+    }
+
+    private boolean completePending(final Cumulation cumulation, final IoBuffer in, final ProtocolDecoderOutput out)
+            throws ProtocolDecoderException {
+
+        if (cumulation.pending() < headerLength) {
+            cumulation.append(in, Math.min(headerLength - cumulation.pending(), in.remaining()));
+            if (cumulation.pending() < headerLength) return false;
+        }
+
+        final int frameLength = checkLength(cumulation.readLength(headerLength));
+        final int needed = headerLength + frameLength - cumulation.pending();
+
+        cumulation.append(in, Math.min(needed, in.remaining()));
+        if (cumulation.pending() < headerLength + frameLength) return false;
+
+        out.write(cumulation.take(headerLength, frameLength));
+        return true;
+
+    }
+
+    private int readLength(final IoBuffer in) {
+        switch (headerLength) {
+            case 1:
+                return in.getUnsigned(in.position());
+            case 2:
+                return in.getUnsignedShort(in.position());
+            default:
+                return in.getInt(in.position());
+        }
+    }
+
+    private int checkLength(final int frameLength) throws ProtocolDecoderException {
+        if (frameLength < 0 || frameLength > maxFrameLength) {
+            throw new ProtocolDecoderException("Invalid frame length: " + frameLength + " (max " + maxFrameLength + ")");
+        }
+        return frameLength;
+    }
+
+    private static final class Cumulation {
+
+        private byte[] bytes;
+
+        private int start;
+
+        private int end;
+
+        private boolean sliced;
+
+        public int pending() {
+            return end - start;
+        }
+
+        /**
+         * Moves pending bytes to the front of the array, discarding those already delivered.  If any frame
+         * was sliced from the array, it is left untouched and the pending bytes are moved to a new array.
+         *
+         * @return the number of pending bytes
+         */
+        public int compact() {
+
+            final int pending = pending();
+            if (start == 0) return pending;
+
+            if (!sliced) {
+                System.arraycopy(bytes, start, bytes, 0, pending);
+            } else if (pending == 0) {
+                // Allocated again only if another partial frame arrives.
+                bytes = null;
+            } else {
+                final byte[] fresh = new byte[bytes.length];
+                System.arraycopy(bytes, start, fresh, 0, pending);
+                bytes = fresh;
+            }
+
+            start = 0;
+            end = pending;
+            sliced = false;
+
+            return pending;
+
+        }
+
+        public void append(final IoBuffer in, final int length) {
+
+            if (bytes == null) {
+                bytes = new byte[Math.max(INITIAL_CUMULATION_SIZE, length)];
+            } else if (end + length > bytes.length) {
+                // Frames already sliced from the old array keep it alive, so it must not be reused.
+                final byte[] grown = new byte[Math.max(bytes.length * 2, end - start + length)];
+                System.arraycopy(bytes, start, grown, 0, end - start);
+                bytes = grown;
+                end -= start;
+                start = 0;
+                sliced = false;
+            }
+
+            in.get(bytes, end, length);
+            end += length;
+
+        }
+
+        public int readLength(final int headerLength) {
+
+            int length = 0;
+
+            for (int i = 0; i < headerLength; ++i) {
+                length = (length << 8) | (bytes[start + i] & 0xFF);
+            }
+
+            return length;
+
+        }
+
+        public IoBuffer take(final int headerLength, final int frameLength) {
+            final IoBuffer frame = IoBuffer.wrap(bytes, start + headerLength, frameLength).slice().asReadOnlyBuffer();
+            start += headerLength + frameLength;
+            sliced = true;
+            return frame;
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
+import org.apache.mina.filter.codec.ProtocolEncoderException;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes {@link ByteBuffer}, byte array or {@link IoBuffer} payloads as frames readable by the
+ * {@link LengthPrefixedFrameDecoder}.  Note that the {@link org.apache.mina.filter.codec.ProtocolCodecFilter}
+ * passes any {@link IoBuffer} written to the session straight through without encoding it, so payloads
+ * written through the filter should be given as a {@link ByteBuffer} or byte array, both of which are
+ * wrapped rather than copied.
+ *
+ * Payloads at or above the copy threshold are never copied: the header is written as its own small
+ * buffer followed by the payload itself, and both are flushed back to back on the session's
+ * processor thread.  Smaller payloads are copied into a single buffer with the header, since one
+ * small write is cheaper than two.  On connectionless sessions the header and payload are always
+ * copied into one buffer, as each write is sent as a separate datagram.
+ *
+ * The {@link ProtocolEncoderOutput} is shared by all writers to a session, so if several threads write
+ * to the same session concurrently, the header and payload of one uncopied frame may be interleaved
+ * with another frame.  Such sessions must have their writes serialized by the caller, or use a copy
+ * threshold of {@link Integer#MAX_VALUE}.
+ */
+@Singleton
+public class LengthPrefixedFrameEncoder extends ProtocolEncoderAdapter {
+
+    /**
+     * The default payload size below which the header and payload are copied into one buffer.
+     */
+    public static final int DEFAULT_COPY_THRESHOLD = 512;
+
+    private final int headerLength;
+
+    private final int copyThreshold;
+
+    /**
+     * Creates an encoder with a four byte header and {@link #DEFAULT_COPY_THRESHOLD}.
+     */
+    @Inject
+    public LengthPrefixedFrameEncoder() {
+        this(4, DEFAULT_COPY_THRESHOLD);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param headerLength the length of the header in bytes; one of 1, 2 or 4
+     * @param copyThreshold the payload size below which header and payload are copied into one buffer
+     */
+    public LengthPrefixedFrameEncoder(final int headerLength, final int copyThreshold) {
+
+        if (headerLength != 1 && headerLength != 2 && headerLength != 4) {
+            throw new IllegalArgumentException("Header length must be 1, 2 or 4: " + headerLength);
+        }
+
+        this.headerLength = headerLength;
+        this.copyThreshold = copyThreshold;
+
+    }
+
+    @Override
+    public void encode(final IoSession session, final Object message, final ProtocolEncoderOutput out) throws Exception {
+
+        final IoBuffer payload;
+
+        if (message instanceof IoBuffer) {
+            payload = (IoBuffer) message;
+        } else if (message instanceof ByteBuffer) {
+            payload = IoBuffer.wrap((ByteBuffer) message);
+        } else if (message instanceof byte[]) {
+            payload = IoBuffer.wrap((byte[]) message);
+        } else {
+            throw new ProtocolEncoderException("Unsupported message type: " + message.getClass());
+        }
+
+        final int length = payload.remaining();
+
+        if (headerLength < 4 && length >= 1 << (headerLength * 8)) {
+            throw new ProtocolEncoderException("Payload too large for " + headerLength + " byte header: " + length);
+        }
+
+        if (length < copyThreshold || session.getTransportMetadata().isConnectionless()) {
+            final IoBuffer frame = IoBuffer.allocate(headerLength + length);
+            putLength(frame, length);
+            frame.put(payload).flip();
+            out.write(frame);
+            return;
+        }
+
+        final IoBuffer header = IoBuffer.allocate(headerLength);
+        putLength(header, length);
+        header.flip();
+
+        out.write(header);
+        out.write(payload);
+
+    }
+
+    private void putLength(final IoBuffer buffer, final int length) {
+        switch (headerLength) {
+            case 1:
+                buffer.put((byte) length);
+                break;
+            case 2:
+                buffer.putShort((short) length);
+                break;
+            default:
+                buffer.putInt(length);
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaModule;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Configuration, state and metrics for the {@link RateLimitFilter}.  Each session receives its own
+ * token bucket, and optionally every session from the same remote address also draws from a shared
+ * bucket for that address.  A received message must take a token from both.
+ *
+ * The address buckets are held in a concurrent map bounded to a maximum number of addresses.  When
+ * the map grows beyond that, the {@link RateLimitFilter} evicts a batch of buckets on its own thread
+ * rather than the I/O processor's.  Buckets which have refilled completely go first, as they hold no
+ * state a new bucket would not, followed by arbitrary buckets if needed.
+ *
+ * An instance is bound as a singleton by {@link MinaModule#bindRateLimit(RateLimit)}.
+ */
+public class RateLimit {
+
+    /**
+     * The default maximum number of remote addresses tracked.
+     */
+    public static final int DEFAULT_MAX_ADDRESSES = 65536;
+
+    static final AttributeKey THROTTLED = new AttributeKey(RateLimit.class, "throttled");
+
+    private static final AttributeKey SESSION_BUCKET = new AttributeKey(RateLimit.class, "bucket");
+
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private final long sessionInterval;
+
+    private final long sessionBurst;
+
+    private final long addressInterval;
+
+    private final long addressBurst;
+
+    private final int maxAddresses;
+
+    private final ConcurrentMap<InetAddress, TokenBucket> addressBuckets = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicInteger throttledSessions = new AtomicInteger();
+
+    private final AtomicLong throttleEvents = new AtomicLong();
+
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    private final AtomicLong evictedAddresses = new AtomicLong();
+
+    /**
+     * Creates a limit applied only per session.
+     *
+     * @param sessionRate the messages per second allowed for each session
+     * @param sessionBurst the messages a session may send at once after being quiet
+     */
+    public RateLimit(final long sessionRate, final long sessionBurst) {
+        this(sessionRate, sessionBurst, 0, 0, DEFAULT_MAX_ADDRESSES);
+    }
+
+    /**
+     * Creates a limit applied per session and per remote address.
+     *
+     * @param sessionRate the messages per second allowed for each session
+     * @param sessionBurst the messages a session may send at once after being quiet
+     * @param addressRate the messages per second allowed for all sessions from one address, or zero for no limit
+     * @param addressBurst the messages all sessions from one address may send at once after being quiet
+     * @param maxAddresses the maximum number of remote addresses tracked
+     * @throws IllegalArgumentException if any rate, burst or the address bound is invalid
+     */
+    public RateLimit(final long sessionRate, final long sessionBurst,
+                     final long addressRate, final long addressBurst, final int maxAddresses) {
+
+        if (sessionRate <= 0 || sessionBurst <= 0) {
+            throw new IllegalArgumentException("Invalid session limit: rate=" + sessionRate + " burst=" + sessionBurst);
+        }
+
+        if (addressRate < 0 || (addressRate > 0 && addressBurst <= 0)) {
+            throw new IllegalArgumentException("Invalid address limit: rate=" + addressRate + " burst=" + addressBurst);
+        }
+
+        if (maxAddresses <= 0) throw new IllegalArgumentException("Max addresses must be positive.");
+
+        this.sessionInterval = interval(sessionRate);
+        this.sessionBurst = sessionBurst;
+        this.addressInterval = addressRate == 0 ? 0 : interval(addressRate);
+        this.addressBurst = addressBurst;
+        this.maxAddresses = maxAddresses;
+
+    }
+
+    /**
+     * Checks if reads on the given session are currently suspended by the limit.
+     *
+     * @param session the session
+     * @return true if throttled
+     */
+    public boolean isThrottled(final IoSession session) {
+        return session.containsAttribute(THROTTLED);
+    }
+
+    /**
+     * Gets the number of sessions whose reads are currently suspended.
+     *
+     * @return the number of throttled sessions
+     */
+    public int getThrottledSessionCount() {
+        return throttledSessions.get();
+    }
+
+    /**
+     * Gets the number of times reads have been suspended on any session.
+     *
+     * @return the throttle event count
+     */
+    public long getThrottleEventCount() {
+        return throttleEvents.get();
+    }
+
+    /**
+     * Gets the number of messages discarded for exceeding the limit.  Only messages on connectionless
+     * sessions are discarded, as anything received on a stream must be delivered to keep it intact.
+     *
+     * @return the dropped message count
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Gets the number of remote addresses currently tracked.
+     *
+     * @return the tracked address count
+     */
+    public int getTrackedAddressCount() {
+        return addressBuckets.size();
+    }
+
+    /**
+     * Gets the number of address buckets evicted to keep within the bound.
+     *
+     * @return the evicted address count
+     */
+    public long getEvictedAddressCount() {
+        return evictedAddresses.get();
+    }
+
+    TokenBucket getSessionBucket(final IoSession session, final long now) {
+
+        final TokenBucket bucket = (TokenBucket) session.getAttribute(SESSION_BUCKET);
+        if (bucket != null) return bucket;
+
+        final TokenBucket created = new TokenBucket(sessionInterval, sessionBurst, now);
+        final TokenBucket existing = (TokenBucket) session.setAttributeIfAbsent(SESSION_BUCKET, created);
+        return existing == null ? created : existing;
+
+    }
+
+    TokenBucket getAddressBucket(final IoSession session, final long now) {
+
+        if (addressInterval == 0) return null;
+
+        final SocketAddress remoteAddress = session.getRemoteAddress();
+        if (!(remoteAddress instanceof InetSocketAddress)) return null;
+
+        final InetAddress address = ((InetSocketAddress) remoteAddress).getAddress();
+        if (address == null) return null;
+
+        final TokenBucket bucket = addressBuckets.get(address);
+        if (bucket != null) return bucket;
+
+        final TokenBucket created = new TokenBucket(addressInterval, addressBurst, now);
+        final TokenBucket existing = addressBuckets.putIfAbsent(address, created);
+        return existing == null ? created : existing;
+
+    }
+
+    boolean throttle(final IoSession session) {
+
+        if (session.setAttributeIfAbsent(THROTTLED, Boolean.TRUE) != null) return false;
+
+        throttledSessions.incrementAndGet();
+        throttleEvents.incrementAndGet();
+        return true;
+
+    }
+
+    boolean release(final IoSession session) {
+
+        if (!session.removeAttribute(THROTTLED, Boolean.TRUE)) return false;
+
+        throttledSessions.decrementAndGet();
+        return true;
+
+    }
+
+    void dropped() {
+        droppedMessages.incrementAndGet();
+    }
+
+    /**
+     * Checks if the address buckets have grown beyond the bound and claims the eviction if so.  Only one
+     * eviction is claimed at a time; until it runs, the map is briefly over the bound.
+     *
+     * @return true if the caller must now call {@link #evict(long)}
+     */
+    boolean startEviction() {
+        return addressBuckets.size() > maxAddresses && evicting.compareAndSet(false, true);
+    }
+
+    /**
+     * Evicts address buckets down to the bound, less a batch, and releases the claim taken by
+     * {@link #startEviction()}.
+     *
+     * @param now the current time
+     */
+    void evict(final long now) {
+
+        try {
+
+            int excess = addressBuckets.size() - (maxAddresses - maxAddresses / EVICTION_BATCH_DIVISOR);
+
+            for (final Iterator<TokenBucket> it = addressBuckets.values().iterator(); excess > 0 && it.hasNext();) {
+                if (it.next().isFull(now)) {
+                    it.remove();
+                    --excess;
+                    evictedAddresses.incrementAndGet();
+                }
+            }
+
+            for (final Iterator<Map.Entry<InetAddress, TokenBucket>> it = addressBuckets.entrySet().iterator(); excess > 0 && it.hasNext();) {
+                it.next();
+                it.remove();
+                --excess;
+                evictedAddresses.incrementAndGet();
+            }
+
+        } finally {
+            evicting.set(false);
+        }
+
+    }
+
+    private static long interval(final long rate) {
+        return Math.max(1, TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.FilterNameBindingBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the configured {@link RateLimit} to received messages.  Every message takes a token from
+ * its session's bucket and, if configured, its remote address's bucket.  Neither takes a lock.
+ *
+ * On a connection-oriented session a message has already been read from the stream, so it is
+ * delivered regardless and the buckets go into debt.  Reads on the session are then suspended until
+ * the debt is paid, leaving further data in the socket rather than buffering it on the heap.  On a
+ * connectionless session, where there is no stream to leave data in, over-limit messages are dropped.
+ * A dropped message takes no token from either bucket.  Reads suspended here are not resumed while
+ * another filter, such as the {@link WriteBackpressureFilter}, still holds them suspended.
+ *
+ * Resuming reads and evicting address buckets run on a daemon thread owned by the filter.  The thread
+ * only lives while such work is pending, so the filter needs no shutdown; MINA itself only destroys
+ * filters wrapped in a {@link org.apache.mina.filter.util.ReferenceCountingFilter}, which shuts the
+ * thread down for good.
+ *
+ * Bind this using {@link FilterNameBindingBuilder#named(String)}, as with any other filter.  It should
+ * be placed after the codec so that it counts messages rather than reads.
+ */
+@Singleton
+public class RateLimitFilter extends IoFilterAdapter {
+
+    private static final long KEEP_ALIVE_SECONDS = 1;
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "RateLimitFilter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final RateLimit rateLimit;
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, THREAD_FACTORY);
+
+    @Inject
+    public RateLimitFilter(final RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+        scheduler.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void messageReceived(final NextFilter nextFilter, final IoSession session, final Object message) throws Exception {
+
+        final long now = System.nanoTime();
+        final TokenBucket sessionBucket = rateLimit.getSessionBucket(session, now);
+        final TokenBucket addressBucket = rateLimit.getAddressBucket(session, now);
+
+        if (rateLimit.startEviction()) scheduleEviction();
+
+        if (session.getTransportMetadata().isConnectionless()) {
+
+            if (sessionBucket.tryAcquire(now) > 0) {
+                rateLimit.dropped();
+                return;
+            }
+
+            if (addressBucket != null && addressBucket.tryAcquire(now) > 0) {
+                sessionBucket.refund();
+                rateLimit.dropped();
+                return;
+            }
+
+        } else {
+
+            long wait = sessionBucket.acquire(now);
+            if (addressBucket != null) wait = Math.max(wait, addressBucket.acquire(now));
+
+            if (wait > 0 && rateLimit.throttle(session)) {
+                ReadSuspension.suspend(session, ReadSuspension.RATE_LIMIT);
+                scheduleResume(session, wait);
+            }
+
+        }
+
+        nextFilter.messageReceived(session, message);
+
+    }
+
+    @Override
+    public void sessionClosed(final NextFilter nextFilter, final IoSession session) throws Exception {
+        rateLimit.release(session);
+        nextFilter.sessionClosed(session);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        scheduler.shutdown();
+    }
+
+    private void scheduleEviction() {
+        try {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    rateLimit.evict(System.nanoTime());
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rateLimit.evict(System.nanoTime());
+        }
+    }
+
+    private void scheduleResume(final IoSession session, final long wait) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    resume(session);
+                }
+            }, wait, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            // The filter has been destroyed, so nothing would ever resume the session.
+            if (rateLimit.release(session)) ReadSuspension.resume(session, ReadSuspension.RATE_LIMIT);
+        }
+    }
+
+    private void resume(final IoSession session) {
+
+        if (session.isClosing()) {
+            rateLimit.release(session);
+            return;
+        }
+
+        // Messages already read when reads were suspended may have added to the debt since.
+
+        final long now = System.nanoTime();
+        final TokenBucket addressBucket = rateLimit.getAddressBucket(session, now);
+
+        long wait = rateLimit.getSessionBucket(session, now).getWait(now);
+        if (addressBucket != null) wait = Math.max(wait, addressBucket.getWait(now));
+
+        if (wait > 0) {
+            scheduleResume(session, wait);
+        } else if (rateLimit.release(session)) {
+            ReadSuspension.resume(session, ReadSuspension.RATE_LIMIT);
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
+
+/**
+ * Shares the suspension of reads on a session between the filters which suspend them.  Each filter
+ * holds its own bit of the suspension, and reads are resumed only once no filter holds one, so that
+ * one filter never resumes reads another still needs suspended.
+ */
+final class ReadSuspension {
+
+    /**
+     * Held by the {@link WriteBackpressureFilter} while the session's write queue drains.
+     */
+    static final int WRITE_BACKPRESSURE = 1;
+
+    /**
+     * Held by the {@link RateLimitFilter} while the session's buckets are in debt.
+     */
+    static final int RATE_LIMIT = 1 << 1;
+
+    private static final AttributeKey READ_SUSPENSION = new AttributeKey(ReadSuspension.class, "readSuspension");
+
+    private int owners;
+
+    private ReadSuspension() {}
+
+    /**
+     * Suspends reads on the session on behalf of the given owner.
+     *
+     * @param session the session
+     * @param owner the owner's bit
+     */
+    static void suspend(final IoSession session, final int owner) {
+        get(session).update(session, owner, true);
+    }
+
+    /**
+     * Releases the given owner's suspension, resuming reads on the session if no other owner holds one.
+     *
+     * @param session the session
+     * @param owner the owner's bit
+     */
+    static void resume(final IoSession session, final int owner) {
+        get(session).update(session, owner, false);
+    }
+
+    private static ReadSuspension get(final IoSession session) {
+
+        final ReadSuspension suspension = (ReadSuspension) session.getAttribute(READ_SUSPENSION);
+        if (suspension != null) return suspension;
+
+        final ReadSuspension created = new ReadSuspension();
+        final ReadSuspension existing = (ReadSuspension) session.setAttributeIfAbsent(READ_SUSPENSION, created);
+        return existing == null ? created : existing;
+
+    }
+
+    private synchronized void update(final IoSession session, final int owner, final boolean suspend) {
+
+        // Suspending and resuming under the lock keeps the session's state in step with the owners.
+
+        final int before = owners;
+        owners = suspend ? before | owner : before & ~owner;
+
+        if (before == 0 && owners != 0) {
+            session.suspendRead();
+        } else if (before != 0 && owners == 0) {
+            session.resumeRead();
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaModule;
+import org.apache.mina.guice.MinaScopes;
+
+import javax.inject.Inject;
+
+/**
+ * Reports whether the current session can accept more writes without exceeding the limits set by
+ * {@link WriteBackpressure}.  Handlers which produce large or unsolicited output should check this
+ * before writing, rather than relying on the {@link WriteBackpressureFilter} to intervene.
+ *
+ * This is bound in {@link MinaScopes#SESSION} by {@link MinaModule#bindWriteBackpressure(long, long, WriteBackpressure.Policy)}
+ * and requires that {@link IoSession} itself is bound, e.g. with {@link MinaModule#bindIoSession()}.
+ */
+public class SessionWritability {
+
+    private final IoSession session;
+
+    private final WriteBackpressure backpressure;
+
+    @Inject
+    public SessionWritability(final IoSession session, final WriteBackpressure backpressure) {
+        this.session = session;
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Checks if the session is writable, that is it is not throttled and has not reached the high watermark.
+     *
+     * @return true if writable
+     */
+    public boolean isWritable() {
+        return !backpressure.isThrottled(session) &&
+               session.getScheduledWriteBytes() < backpressure.getHighWatermark();
+    }
+
+    /**
+     * Gets the number of bytes which may be scheduled before reaching the high watermark.
+     *
+     * @return the remaining bytes, or zero if the session is not writable
+     */
+    public long getWritableBytes() {
+        return isWritable() ? backpressure.getHighWatermark() - session.getScheduledWriteBytes() : 0;
+    }
+
+    /**
+     * Gets the bytes currently scheduled for writing.
+     *
+     * @return the scheduled write bytes
+     */
+    public long getScheduledWriteBytes() {
+        return session.getScheduledWriteBytes();
+    }
+
+}
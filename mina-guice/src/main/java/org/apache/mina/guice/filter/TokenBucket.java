@@ -0,0 +1,97 @@
+package org.apache.mina.guice.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.  Rather than a token count and a refill timestamp, the bucket keeps the
+ * single time at which it will next be full, so each acquisition is one compare-and-set of one
+ * {@link AtomicLong} and no thread ever has to refill it.
+ *
+ * All times are in nanoseconds as returned by {@link System#nanoTime()}.
+ */
+final class TokenBucket {
+
+    private final long interval;
+
+    private final long capacity;
+
+    private final AtomicLong fullAt;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param interval the nanoseconds in which a single token is replenished
+     * @param burst the number of tokens the bucket holds when full
+     * @param now the current time
+     */
+    public TokenBucket(final long interval, final long burst, final long now) {
+        this.interval = interval;
+        this.capacity = interval * burst;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now the current time
+     * @return zero if a token was taken, otherwise the nanoseconds until one will be available
+     */
+    public long tryAcquire(final long now) {
+        for (;;) {
+
+            final long current = fullAt.get();
+            final long next = Math.max(current, now) + interval;
+            final long wait = next - now - capacity;
+
+            if (wait > 0) return wait;
+            if (fullAt.compareAndSet(current, next)) return 0;
+
+        }
+    }
+
+    /**
+     * Takes a token regardless of whether one is available, putting the bucket into debt if not.
+     *
+     * @param now the current time
+     * @return zero if a further token is available, otherwise the nanoseconds until one will be
+     */
+    public long acquire(final long now) {
+        for (;;) {
+
+            final long current = fullAt.get();
+            final long next = Math.max(current, now) + interval;
+
+            if (fullAt.compareAndSet(current, next)) return Math.max(0, next + interval - now - capacity);
+
+        }
+    }
+
+    /**
+     * Returns a token taken by {@link #tryAcquire(long)} or {@link #acquire(long)}, for when the message it
+     * was taken for is not delivered after all.
+     */
+    public void refund() {
+        fullAt.addAndGet(-interval);
+    }
+
+    /**
+     * Gets the time until a token will be available, without taking one.
+     *
+     * @param now the current time
+     * @return zero if a token is available, otherwise the nanoseconds until one will be
+     */
+    public long getWait(final long now) {
+        return Math.max(0, fullAt.get() + interval - now - capacity);
+    }
+
+    /**
+     * Checks if the bucket is full, in which case it is indistinguishable from a new bucket.
+     *
+     * @param now the current time
+     * @return true if full
+     */
+    public boolean isFull(final long now) {
+        return fullAt.get() <= now;
+    }
+
+}
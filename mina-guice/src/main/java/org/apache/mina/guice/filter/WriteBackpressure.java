@@ -0,0 +1,167 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaModule;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Configuration and metrics for the {@link WriteBackpressureFilter}.  A session becomes throttled
+ * once the bytes scheduled for writing reach the high watermark, and stays throttled until they
+ * drain to the low watermark.  What happens when a session becomes throttled is determined by the
+ * {@link Policy}.
+ *
+ * An instance is bound as a singleton by {@link MinaModule#bindWriteBackpressure(long, long, Policy)}.
+ */
+public class WriteBackpressure {
+
+    /**
+     * The action taken when a session reaches the high watermark.
+     */
+    public enum Policy {
+
+        /**
+         * Suspends reads on the session until the low watermark is reached.  Writes are still accepted.
+         * Reads stay suspended while another filter, such as the {@link RateLimitFilter}, still holds
+         * them suspended.
+         */
+        SUSPEND_READ,
+
+        /**
+         * Fails any further writes until the low watermark is reached.
+         */
+        DROP,
+
+        /**
+         * Closes the session immediately.
+         */
+        CLOSE
+
+    }
+
+    static final AttributeKey THROTTLED = new AttributeKey(WriteBackpressure.class, "throttled");
+
+    private final long highWatermark;
+
+    private final long lowWatermark;
+
+    private final Policy policy;
+
+    private final AtomicInteger throttledSessions = new AtomicInteger();
+
+    private final AtomicLong throttleEvents = new AtomicLong();
+
+    private final AtomicLong droppedWrites = new AtomicLong();
+
+    private final AtomicLong closedSessions = new AtomicLong();
+
+    /**
+     * Creates the configuration.
+     *
+     * @param highWatermark the scheduled write bytes at which a session becomes throttled
+     * @param lowWatermark the scheduled write bytes at which a throttled session is released
+     * @param policy the {@link Policy}
+     * @throws IllegalArgumentException if the watermarks are negative or the low exceeds the high watermark
+     */
+    public WriteBackpressure(final long highWatermark, final long lowWatermark, final Policy policy) {
+
+        if (lowWatermark < 0 || highWatermark < lowWatermark) {
+            throw new IllegalArgumentException("Invalid watermarks: high=" + highWatermark + " low=" + lowWatermark);
+        }
+
+        if (policy == null) throw new IllegalArgumentException("Policy cannot be null.");
+
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.policy = policy;
+
+    }
+
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Checks if the given session is currently throttled.
+     *
+     * @param session the session
+     * @return true if throttled
+     */
+    public boolean isThrottled(final IoSession session) {
+        return session.containsAttribute(THROTTLED);
+    }
+
+    /**
+     * Gets the number of sessions currently throttled.
+     *
+     * @return the number of throttled sessions
+     */
+    public int getThrottledSessionCount() {
+        return throttledSessions.get();
+    }
+
+    /**
+     * Gets the number of times any session has reached the high watermark.
+     *
+     * @return the throttle event count
+     */
+    public long getThrottleEventCount() {
+        return throttleEvents.get();
+    }
+
+    /**
+     * Gets the number of writes failed under {@link Policy#DROP}.
+     *
+     * @return the dropped write count
+     */
+    public long getDroppedWriteCount() {
+        return droppedWrites.get();
+    }
+
+    /**
+     * Gets the number of sessions closed under {@link Policy#CLOSE}.
+     *
+     * @return the closed session count
+     */
+    public long getClosedSessionCount() {
+        return closedSessions.get();
+    }
+
+    boolean throttle(final IoSession session) {
+
+        if (session.setAttributeIfAbsent(THROTTLED, Boolean.TRUE) != null) return false;
+
+        throttledSessions.incrementAndGet();
+        throttleEvents.incrementAndGet();
+        return true;
+
+    }
+
+    boolean release(final IoSession session) {
+
+        if (!session.removeAttribute(THROTTLED, Boolean.TRUE)) return false;
+
+        throttledSessions.decrementAndGet();
+        return true;
+
+    }
+
+    void dropped() {
+        droppedWrites.incrementAndGet();
+    }
+
+    void closed() {
+        closedSessions.incrementAndGet();
+    }
+
+}
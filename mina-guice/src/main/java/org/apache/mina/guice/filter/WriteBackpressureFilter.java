@@ -0,0 +1,98 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteException;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.guice.FilterNameBindingBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Applies the configured {@link WriteBackpressure} to each session based on the bytes MINA has
+ * scheduled for writing but not yet written.  This keeps slow consumers from accumulating an
+ * unbounded queue of {@link WriteRequest}s.
+ *
+ * Bind this using {@link FilterNameBindingBuilder#named(String)}, as with any other filter.  The
+ * filter relies on the scheduled write byte count maintained by MINA and keeps no per-session
+ * state of its own beyond a single attribute while the session is throttled.
+ */
+@Singleton
+public class WriteBackpressureFilter extends IoFilterAdapter {
+
+    private final WriteBackpressure backpressure;
+
+    @Inject
+    public WriteBackpressureFilter(final WriteBackpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    @Override
+    public void filterWrite(final NextFilter nextFilter, final IoSession session,
+                            final WriteRequest writeRequest) throws Exception {
+
+        if (backpressure.getPolicy() == WriteBackpressure.Policy.DROP && backpressure.isThrottled(session)) {
+            backpressure.dropped();
+            writeRequest.getFuture().setException(new WriteException(writeRequest, "Write queue is full."));
+            return;
+        }
+
+        nextFilter.filterWrite(session, writeRequest);
+
+        if (session.getScheduledWriteBytes() >= backpressure.getHighWatermark() && backpressure.throttle(session)) {
+
+            onThrottled(session);
+
+            // The queue may have drained, and its last messageSent found nothing to release, between
+            // the check and the throttle.  No further messageSent would then come to release it.
+
+            if (backpressure.getPolicy() != WriteBackpressure.Policy.CLOSE &&
+                session.getScheduledWriteBytes() <= backpressure.getLowWatermark() &&
+                backpressure.release(session)) {
+                onReleased(session);
+            }
+
+        }
+
+    }
+
+    @Override
+    public void messageSent(final NextFilter nextFilter, final IoSession session,
+                            final WriteRequest writeRequest) throws Exception {
+
+        if (session.getScheduledWriteBytes() <= backpressure.getLowWatermark() && backpressure.release(session)) {
+            onReleased(session);
+        }
+
+        nextFilter.messageSent(session, writeRequest);
+
+    }
+
+    @Override
+    public void sessionClosed(final NextFilter nextFilter, final IoSession session) throws Exception {
+        backpressure.release(session);
+        nextFilter.sessionClosed(session);
+    }
+
+    private void onThrottled(final IoSession session) {
+        switch (backpressure.getPolicy()) {
+            case SUSPEND_READ:
+                ReadSuspension.suspend(session, ReadSuspension.WRITE_BACKPRESSURE);
+                break;
+            case CLOSE:
+                backpressure.closed();
+                session.close(true);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onReleased(final IoSession session) {
+        if (backpressure.getPolicy() == WriteBackpressure.Policy.SUSPEND_READ) {
+            ReadSuspension.resume(session, ReadSuspension.WRITE_BACKPRESSURE);
+        }
+    }
+
+}
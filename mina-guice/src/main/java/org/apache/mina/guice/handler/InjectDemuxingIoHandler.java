@@ -0,0 +1,145 @@
+package org.apache.mina.guice.handler;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.session.UnknownMessageTypeException;
+import org.apache.mina.guice.MinaModule;
+import org.apache.mina.guice.MinaScopes;
+import org.apache.mina.handler.demux.MessageHandler;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dispatches each received message to the {@link MessageHandler} bound for its type with
+ * {@link MinaModule#bindMessageHandler(Class)}.  The routing table is built when this handler is
+ * constructed, so dispatch is a single map lookup on the message's class.
+ *
+ * Messages whose exact class has no handler are routed to the handler for the nearest registered
+ * supertype: superclasses are checked first, from the most specific, followed by interfaces in
+ * breadth-first order.  The result, including the absence of any handler, is cached per class.
+ *
+ * Since this is an {@link org.apache.mina.core.service.IoHandler}, the {@link MinaModule} places
+ * {@link #messageReceived(IoSession, Object)} in session scope.  The typed handlers are obtained
+ * from their providers within that scope, so they may themselves be scoped with {@link MinaScopes#SESSION}.
+ *
+ * Extend this class to handle the other {@link org.apache.mina.core.service.IoHandler} events, and bind the
+ * subclass with {@link MinaModule#bindDemuxingIoHandler(Class)}.  A subclass must provide an injectable
+ * constructor taking the same arguments as this class.
+ */
+@Singleton
+public class InjectDemuxingIoHandler extends IoHandlerAdapter {
+
+    /**
+     * The type to which each {@link MessageHandler} is bound, annotated with {@link Named} and the name of
+     * the message type it handles.
+     */
+    public static final TypeLiteral<MessageHandler<?>> MESSAGE_HANDLER_TYPE = new TypeLiteral<MessageHandler<?>>() {};
+
+    private static final Provider<MessageHandler<Object>> UNHANDLED = new Provider<MessageHandler<Object>>() {
+        @Override
+        public MessageHandler<Object> get() {
+            return null;
+        }
+    };
+
+    private final Map<Class<?>, Provider<MessageHandler<Object>>> registered;
+
+    private final ConcurrentMap<Class<?>, Provider<MessageHandler<Object>>> routes = new ConcurrentHashMap<>();
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    public InjectDemuxingIoHandler(final Injector injector,
+                                   @Named(MinaModule.MESSAGE_HANDLER_TYPES) final List<Class<?>> messageTypes) {
+
+        final Map<Class<?>, Provider<MessageHandler<Object>>> registered = new HashMap<>();
+
+        for (final Class<?> messageType : messageTypes) {
+            final Key<MessageHandler<?>> key = Key.get(MESSAGE_HANDLER_TYPE, Names.named(messageType.getName()));
+            registered.put(messageType, (Provider<MessageHandler<Object>>) (Provider<?>) injector.getProvider(key));
+        }
+
+        this.registered = Collections.unmodifiableMap(registered);
+        this.routes.putAll(registered);
+
+    }
+
+    @Override
+    public void messageReceived(final IoSession session, final Object message) throws Exception {
+
+        final Class<?> messageType = message.getClass();
+        Provider<MessageHandler<Object>> route = routes.get(messageType);
+
+        if (route == null) {
+            route = resolve(messageType);
+            final Provider<MessageHandler<Object>> existing = routes.putIfAbsent(messageType, route);
+            if (existing != null) route = existing;
+        }
+
+        if (route == UNHANDLED) {
+            unhandledMessage(session, message);
+        } else {
+            route.get().handleMessage(session, message);
+        }
+
+    }
+
+    /**
+     * Invoked when no {@link MessageHandler} is bound for the message's type or any of its supertypes.
+     * The default implementation throws an {@link UnknownMessageTypeException}.
+     *
+     * @param session the session
+     * @param message the message
+     * @throws Exception if the message could not be handled
+     */
+    protected void unhandledMessage(final IoSession session, final Object message) throws Exception {
+        throw new UnknownMessageTypeException("No message handler found for message type: " + message.getClass());
+    }
+
+    private Provider<MessageHandler<Object>> resolve(final Class<?> messageType) {
+
+        for (Class<?> cls = messageType; cls != null; cls = cls.getSuperclass()) {
+            final Provider<MessageHandler<Object>> route = registered.get(cls);
+            if (route != null) return route;
+        }
+
+        final Set<Class<?>> visited = new LinkedHashSet<>();
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+
+        for (Class<?> cls = messageType; cls != null; cls = cls.getSuperclass()) {
+            Collections.addAll(queue, cls.getInterfaces());
+        }
+
+        while (!queue.isEmpty()) {
+
+            final Class<?> iface = queue.poll();
+            if (!visited.add(iface)) continue;
+
+            final Provider<MessageHandler<Object>> route = registered.get(iface);
+            if (route != null) return route;
+
+            Collections.addAll(queue, iface.getInterfaces());
+
+        }
+
+        return UNHANDLED;
+
+    }
+
+}
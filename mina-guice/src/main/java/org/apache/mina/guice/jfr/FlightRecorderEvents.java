@@ -0,0 +1,171 @@
+package org.apache.mina.guice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.apache.mina.core.filterchain.IoFilter;
+import org.apache.mina.core.filterchain.IoFilterChain;
+import org.apache.mina.core.session.IoSession;
+
+import java.lang.reflect.Method;
+
+/**
+ * The Flight Recorder event types.  This class must only be loaded through {@link MinaFlightRecorder}
+ * after it has confirmed that {@code jdk.jfr} is present.
+ *
+ * Each begin method checks the cached {@link EventType} before constructing anything, as an event
+ * object returned as a token escapes and could not be eliminated by the JIT even when disabled.
+ */
+final class FlightRecorderEvents {
+
+    private static final EventType SESSION_SCOPE = EventType.getEventType(SessionScopeEvent.class);
+
+    private static final EventType FILTER_INVOCATION = EventType.getEventType(FilterInvocationEvent.class);
+
+    private static final EventType SCOPED_OBJECT_CONSTRUCTION = EventType.getEventType(ScopedObjectConstructionEvent.class);
+
+    private static final EventType FILTER_CHAIN_BUILD = EventType.getEventType(FilterChainBuildEvent.class);
+
+    private FlightRecorderEvents() {}
+
+    static Object beginSessionScope(final IoSession session, final Method method) {
+
+        if (!SESSION_SCOPE.isEnabled()) return null;
+
+        final SessionScopeEvent event = new SessionScopeEvent();
+
+        event.sessionId = session.getId();
+        event.method = method.getDeclaringClass().getName() + "." + method.getName();
+        event.begin();
+        return event;
+
+    }
+
+    static Object beginFilterInvocation(final IoSession session, final IoFilter filter, final Method method) {
+
+        if (!FILTER_INVOCATION.isEnabled()) return null;
+
+        final FilterInvocationEvent event = new FilterInvocationEvent();
+
+        final IoFilterChain.Entry entry = session.getFilterChain().getEntry(filter);
+
+        event.sessionId = session.getId();
+        event.filterName = entry == null ? null : entry.getName();
+        event.filterClass = filter.getClass().getName();
+        event.method = method.getName();
+        event.begin();
+        return event;
+
+    }
+
+    static Object beginScopedObjectConstruction(final IoSession session, final Object key) {
+
+        if (!SCOPED_OBJECT_CONSTRUCTION.isEnabled()) return null;
+
+        final ScopedObjectConstructionEvent event = new ScopedObjectConstructionEvent();
+
+        event.sessionId = session == null ? -1 : session.getId();
+        event.key = String.valueOf(key);
+        event.begin();
+        return event;
+
+    }
+
+    static Object beginFilterChainBuild(final IoSession session) {
+
+        if (!FILTER_CHAIN_BUILD.isEnabled()) return null;
+
+        final FilterChainBuildEvent event = new FilterChainBuildEvent();
+
+        event.sessionId = session.getId();
+        event.begin();
+        return event;
+
+    }
+
+    static void setFilterCount(final Object token, final int filterCount) {
+        ((FilterChainBuildEvent) token).filterCount = filterCount;
+    }
+
+    static void end(final Object token) {
+        final Event event = (Event) token;
+        event.end();
+        event.commit();
+    }
+
+    @Name("org.apache.mina.guice.SessionScope")
+    @Label("Session Scope")
+    @Description("Time spent with an IoSession in scope for an intercepted IoHandler or IoFilter method.")
+    @Category({"Apache MINA", "Guice"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SessionScopeEvent extends Event {
+
+        @Label("Session Id")
+        long sessionId;
+
+        @Label("Method")
+        String method;
+
+    }
+
+    @Name("org.apache.mina.guice.FilterInvocation")
+    @Label("Filter Invocation")
+    @Description("An intercepted IoFilter method, identified by the name the filter was bound with.")
+    @Category({"Apache MINA", "Guice"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class FilterInvocationEvent extends Event {
+
+        @Label("Session Id")
+        long sessionId;
+
+        @Label("Filter Name")
+        String filterName;
+
+        @Label("Filter Class")
+        String filterClass;
+
+        @Label("Method")
+        String method;
+
+    }
+
+    @Name("org.apache.mina.guice.ScopedObjectConstruction")
+    @Label("Scoped Object Construction")
+    @Description("A MinaScopes lookup which found no existing instance and constructed a new one. The session id is -1 outside session scope.")
+    @Category({"Apache MINA", "Guice"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ScopedObjectConstructionEvent extends Event {
+
+        @Label("Session Id")
+        long sessionId;
+
+        @Label("Key")
+        String key;
+
+    }
+
+    @Name("org.apache.mina.guice.FilterChainBuild")
+    @Label("Filter Chain Build")
+    @Description("Construction of a session's IoFilterChain by the GuiceIoFilterChainBuilder.")
+    @Category({"Apache MINA", "Guice"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class FilterChainBuildEvent extends Event {
+
+        @Label("Session Id")
+        long sessionId;
+
+        @Label("Filter Count")
+        int filterCount;
+
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.apache.mina.guice.jfr;
+
+import org.apache.mina.core.filterchain.IoFilter;
+import org.apache.mina.core.session.IoSession;
+
+import java.lang.reflect.Method;
+
+/**
+ * Emits JDK Flight Recorder events for scope entry, filter invocations, scoped object construction
+ * and filter chain builds.  Each begin method returns an opaque token which must be handed back to
+ * {@link #end(Object)}.
+ *
+ * All events are disabled by default and must be enabled in the recording settings, e.g.
+ * {@code org.apache.mina.guice.FilterInvocation#enabled=true}.  When an event is disabled, or the
+ * running JVM has no Flight Recorder, the begin methods return null without allocating and
+ * {@link #end(Object)} does nothing.
+ *
+ * The event types themselves are kept in {@link FlightRecorderEvents}, which is only loaded when the
+ * running JVM provides the {@code jdk.jfr} module, so this library still runs on older JVMs.  Building
+ * it needs {@code jdk.jfr} on the compile classpath, so the build requires JDK 11 or later.
+ */
+public final class MinaFlightRecorder {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private MinaFlightRecorder() {}
+
+    /**
+     * Begins a session scope event.
+     *
+     * @param session the session entering scope
+     * @param method the intercepted method
+     * @return the token, or null if not recording
+     */
+    public static Object beginSessionScope(final IoSession session, final Method method) {
+        return AVAILABLE ? FlightRecorderEvents.beginSessionScope(session, method) : null;
+    }
+
+    /**
+     * Begins a filter invocation event.  The filter's name is looked up in the session's chain only
+     * if the event is enabled.
+     *
+     * @param session the session
+     * @param filter the filter being invoked
+     * @param method the intercepted method
+     * @return the token, or null if not recording
+     */
+    public static Object beginFilterInvocation(final IoSession session, final IoFilter filter, final Method method) {
+        return AVAILABLE ? FlightRecorderEvents.beginFilterInvocation(session, filter, method) : null;
+    }
+
+    /**
+     * Begins a scoped object construction event.
+     *
+     * @param session the session, or null if the object is not session scoped
+     * @param key the key of the object being constructed
+     * @return the token, or null if not recording
+     */
+    public static Object beginScopedObjectConstruction(final IoSession session, final Object key) {
+        return AVAILABLE ? FlightRecorderEvents.beginScopedObjectConstruction(session, key) : null;
+    }
+
+    /**
+     * Begins a filter chain build event.
+     *
+     * @param session the session whose chain is being built
+     * @return the token, or null if not recording
+     */
+    public static Object beginFilterChainBuild(final IoSession session) {
+        return AVAILABLE ? FlightRecorderEvents.beginFilterChainBuild(session) : null;
+    }
+
+    /**
+     * Records the number of filters added to the chain on the given filter chain build token.
+     *
+     * @param token the token returned from {@link #beginFilterChainBuild(IoSession)}
+     * @param filterCount the number of filters added
+     */
+    public static void setFilterCount(final Object token, final int filterCount) {
+        if (token != null) FlightRecorderEvents.setFilterCount(token, filterCount);
+    }
+
+    /**
+     * Ends and commits the event for the given token.
+     *
+     * @param token the token returned from any begin method, possibly null
+     */
+    public static void end(final Object token) {
+        if (token != null) FlightRecorderEvents.end(token);
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, MinaFlightRecorder.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+}
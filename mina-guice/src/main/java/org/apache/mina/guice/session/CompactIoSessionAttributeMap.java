@@ -0,0 +1,272 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.session.IoSessionAttributeMap;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A memory-lean {@link IoSessionAttributeMap}.  Keys and values are stored side by side in a single
+ * array.  While the map holds fewer than {@link #SMALL_LIMIT} entries the array is scanned linearly,
+ * beyond that it becomes an open-addressing hash table with linear probing.  Nothing is allocated
+ * until the first attribute is set and the array is released once the last attribute is removed.
+ *
+ * All operations synchronize on the map itself.  Access to a single session's attributes is very
+ * rarely contended, so this costs far less than a {@link java.util.concurrent.ConcurrentHashMap}
+ * per session in both space and time.
+ */
+public class CompactIoSessionAttributeMap implements IoSessionAttributeMap {
+
+    /**
+     * The number of entries beyond which the map switches from linear scan to hashing.
+     */
+    public static final int SMALL_LIMIT = 8;
+
+    private static final int INITIAL_ENTRIES = 2;
+
+    private Object[] table;
+
+    private int size;
+
+    private boolean hashed;
+
+    @Override
+    public synchronized Object getAttribute(final IoSession session, final Object key, final Object defaultValue) {
+
+        checkKey(key);
+
+        final int index = indexOf(key);
+        if (index >= 0) return table[index + 1];
+        if (defaultValue == null) return null;
+
+        put(key, defaultValue);
+        return defaultValue;
+
+    }
+
+    @Override
+    public synchronized Object setAttribute(final IoSession session, final Object key, final Object value) {
+        checkKey(key);
+        return value == null ? remove(key) : put(key, value);
+    }
+
+    @Override
+    public synchronized Object setAttributeIfAbsent(final IoSession session, final Object key, final Object value) {
+
+        checkKey(key);
+        if (value == null) return null;
+
+        final int index = indexOf(key);
+        if (index >= 0) return table[index + 1];
+
+        put(key, value);
+        return null;
+
+    }
+
+    @Override
+    public synchronized Object removeAttribute(final IoSession session, final Object key) {
+        checkKey(key);
+        return remove(key);
+    }
+
+    @Override
+    public synchronized boolean removeAttribute(final IoSession session, final Object key, final Object value) {
+
+        checkKey(key);
+        if (value == null) return false;
+
+        final int index = indexOf(key);
+        if (index < 0 || !value.equals(table[index + 1])) return false;
+
+        remove(key);
+        return true;
+
+    }
+
+    @Override
+    public synchronized boolean replaceAttribute(final IoSession session, final Object key,
+                                                 final Object oldValue, final Object newValue) {
+
+        checkKey(key);
+
+        final int index = indexOf(key);
+        if (index < 0 || !table[index + 1].equals(oldValue)) return false;
+
+        if (newValue == null) {
+            remove(key);
+        } else {
+            table[index + 1] = newValue;
+        }
+
+        return true;
+
+    }
+
+    @Override
+    public synchronized boolean containsAttribute(final IoSession session, final Object key) {
+        checkKey(key);
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized Set<Object> getAttributeKeys(final IoSession session) {
+
+        final Set<Object> keys = new HashSet<>(size * 2);
+        if (table == null) return keys;
+
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] != null) keys.add(table[i]);
+        }
+
+        return keys;
+
+    }
+
+    @Override
+    public synchronized void dispose(final IoSession session) throws Exception {
+        table = null;
+        size = 0;
+        hashed = false;
+    }
+
+    private int indexOf(final Object key) {
+
+        if (table == null) return -1;
+
+        if (!hashed) {
+
+            for (int i = 0; i < size * 2; i += 2) {
+                if (key.equals(table[i])) return i;
+            }
+
+            return -1;
+
+        }
+
+        final int mask = table.length / 2 - 1;
+
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            final Object existing = table[slot * 2];
+            if (existing == null) return -1;
+            if (key.equals(existing)) return slot * 2;
+        }
+
+    }
+
+    private Object put(final Object key, final Object value) {
+
+        final int index = indexOf(key);
+
+        if (index >= 0) {
+            final Object old = table[index + 1];
+            table[index + 1] = value;
+            return old;
+        }
+
+        if (!hashed && size < SMALL_LIMIT) {
+
+            if (table == null) {
+                table = new Object[INITIAL_ENTRIES * 2];
+            } else if (size * 2 == table.length) {
+                final Object[] grown = new Object[Math.min(table.length * 2, SMALL_LIMIT * 2)];
+                System.arraycopy(table, 0, grown, 0, table.length);
+                table = grown;
+            }
+
+            table[size * 2] = key;
+            table[size * 2 + 1] = value;
+            ++size;
+            return null;
+
+        }
+
+        final int slots = hashed ? table.length / 2 : Integer.highestOneBit(SMALL_LIMIT) * 4;
+        if (!hashed || (size + 1) * 2 > slots) rehash(hashed ? slots * 2 : slots);
+
+        insert(key, value);
+        ++size;
+        return null;
+
+    }
+
+    private Object remove(final Object key) {
+
+        final int index = indexOf(key);
+        if (index < 0) return null;
+
+        final Object old = table[index + 1];
+
+        if (--size == 0) {
+            table = null;
+            hashed = false;
+            return old;
+        }
+
+        if (!hashed) {
+            table[index] = table[size * 2];
+            table[index + 1] = table[size * 2 + 1];
+            table[size * 2] = table[size * 2 + 1] = null;
+            return old;
+        }
+
+        // Backward shift deletion keeps probe sequences intact without tombstones.
+
+        final int mask = table.length / 2 - 1;
+        int hole = index / 2;
+
+        table[hole * 2] = table[hole * 2 + 1] = null;
+
+        for (int slot = (hole + 1) & mask; table[slot * 2] != null; slot = (slot + 1) & mask) {
+
+            final int home = hash(table[slot * 2]) & mask;
+            final boolean movable = slot > hole ? (home <= hole || home > slot) : (home <= hole && home > slot);
+
+            if (movable) {
+                table[hole * 2] = table[slot * 2];
+                table[hole * 2 + 1] = table[slot * 2 + 1];
+                table[slot * 2] = table[slot * 2 + 1] = null;
+                hole = slot;
+            }
+
+        }
+
+        return old;
+
+    }
+
+    private void rehash(final int slots) {
+
+        final Object[] old = table;
+        table = new Object[slots * 2];
+        hashed = true;
+
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != null) insert(old[i], old[i + 1]);
+        }
+
+    }
+
+    private void insert(final Object key, final Object value) {
+
+        final int mask = table.length / 2 - 1;
+
+        int slot = hash(key) & mask;
+        while (table[slot * 2] != null) slot = (slot + 1) & mask;
+
+        table[slot * 2] = key;
+        table[slot * 2 + 1] = value;
+
+    }
+
+    private static int hash(final Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static void checkKey(final Object key) {
+        if (key == null) throw new IllegalArgumentException("key");
+    }
+
+}
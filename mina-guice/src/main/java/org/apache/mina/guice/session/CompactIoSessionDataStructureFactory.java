@@ -0,0 +1,32 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.session.IoSessionAttributeMap;
+import org.apache.mina.core.session.IoSessionDataStructureFactory;
+import org.apache.mina.core.write.WriteRequestQueue;
+import org.apache.mina.guice.MinaModule;
+
+import javax.inject.Singleton;
+
+/**
+ * An {@link IoSessionDataStructureFactory} producing {@link CompactIoSessionAttributeMap} and
+ * {@link CompactWriteRequestQueue} instances.  This is intended for services holding very large
+ * numbers of mostly idle sessions, where the per-session overhead of MINA's default structures
+ * makes up a significant share of the heap.
+ *
+ * Install with {@link MinaModule#bindSessionDataStructureFactory()}.
+ */
+@Singleton
+public class CompactIoSessionDataStructureFactory implements IoSessionDataStructureFactory {
+
+    @Override
+    public IoSessionAttributeMap getAttributeMap(final IoSession session) throws Exception {
+        return new CompactIoSessionAttributeMap();
+    }
+
+    @Override
+    public WriteRequestQueue getWriteRequestQueue(final IoSession session) throws Exception {
+        return new CompactWriteRequestQueue();
+    }
+
+}
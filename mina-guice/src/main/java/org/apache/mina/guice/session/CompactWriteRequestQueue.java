@@ -0,0 +1,78 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.core.write.WriteRequestQueue;
+
+import java.util.ArrayDeque;
+
+/**
+ * A {@link WriteRequestQueue} backed by an {@link ArrayDeque} which is only allocated while there
+ * are writes pending.  Idle sessions therefore hold no queue storage at all, and a queue which grew
+ * past its initial capacity during a burst is released once drained rather than kept at its
+ * high-water size for the lifetime of the session.
+ */
+public class CompactWriteRequestQueue implements WriteRequestQueue {
+
+    /**
+     * The initial capacity of the queue when the first write is offered.
+     */
+    public static final int INITIAL_CAPACITY = 8;
+
+    private ArrayDeque<WriteRequest> queue;
+
+    private int highWater;
+
+    @Override
+    public synchronized WriteRequest poll(final IoSession session) {
+
+        if (queue == null) return null;
+
+        final WriteRequest writeRequest = queue.poll();
+
+        if (queue.isEmpty() && highWater > INITIAL_CAPACITY) {
+            queue = null;
+            highWater = 0;
+        }
+
+        return writeRequest;
+
+    }
+
+    @Override
+    public synchronized void offer(final IoSession session, final WriteRequest writeRequest) {
+
+        if (queue == null) queue = new ArrayDeque<>(INITIAL_CAPACITY);
+
+        queue.offer(writeRequest);
+        highWater = Math.max(highWater, queue.size());
+
+    }
+
+    @Override
+    public synchronized boolean isEmpty(final IoSession session) {
+        return queue == null || queue.isEmpty();
+    }
+
+    @Override
+    public synchronized void clear(final IoSession session) {
+        queue = null;
+        highWater = 0;
+    }
+
+    @Override
+    public void dispose(final IoSession session) {
+        clear(session);
+    }
+
+    @Override
+    public synchronized int size() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return queue == null ? "[]" : queue.toString();
+    }
+
+}
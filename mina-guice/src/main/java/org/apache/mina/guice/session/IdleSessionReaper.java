@@ -0,0 +1,131 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.core.service.IoService;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaModule;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closes sessions which stay idle, and reports what idle handling costs.  Idle sessions are detected
+ * by MINA itself: the idle time is set on the acceptor's session configuration before any session is
+ * created, so sessionIdle fires on each session's processor thread and the filters and the handler
+ * receive the usual intercepted, session scoped callbacks.  A session is closed once the handler has
+ * seen the configured number of consecutive idle notifications for it.
+ *
+ * MINA's processor walks all of its sessions once a second to check for idleness whether or not an
+ * idle time is set, and that walk costs the same either way, so there is nothing to gain by detecting
+ * idleness separately.  What varies with the session count is the work done in the sessionIdle
+ * callbacks themselves, which is what {@link #getTotalIdleCallbackTime(TimeUnit)} reports.
+ *
+ * An instance is bound by {@link MinaModule#bindIdleSessionReaper(IdleSessionReaper)}.  Notifications
+ * swallowed by a filter never reach the handler, and so do not count towards closing the session.
+ */
+public class IdleSessionReaper {
+
+    private final int idleTimeSeconds;
+
+    private final IdleStatus idleStatus;
+
+    private final int reapAfter;
+
+    private final AtomicLong idleEvents = new AtomicLong();
+
+    private final AtomicLong reapedSessions = new AtomicLong();
+
+    private final AtomicLong idleCallbackNanos = new AtomicLong();
+
+    private final AtomicLong maxIdleCallbackNanos = new AtomicLong();
+
+    /**
+     * Creates the reaper.
+     *
+     * @param idleTime the time without I/O after which a session is idle, in whole seconds of at least one
+     * @param timeUnit the unit of the idle time
+     * @param idleStatus the kind of I/O which counts as activity
+     * @param reapAfter the number of consecutive idle notifications after which the session is closed, or zero to never close
+     */
+    public IdleSessionReaper(final long idleTime, final TimeUnit timeUnit, final IdleStatus idleStatus, final int reapAfter) {
+
+        final long idleTimeSeconds = timeUnit.toSeconds(idleTime);
+
+        if (idleTimeSeconds < 1 || idleTimeSeconds > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid idle time: " + idleTime + " " + timeUnit);
+        }
+
+        if (idleStatus == null) throw new IllegalArgumentException("Idle status cannot be null.");
+        if (reapAfter < 0) throw new IllegalArgumentException("Reap count must not be negative.");
+
+        this.idleTimeSeconds = (int) idleTimeSeconds;
+        this.idleStatus = idleStatus;
+        this.reapAfter = reapAfter;
+
+    }
+
+    /**
+     * Sets the idle time on the service's session configuration.  This must happen before the service
+     * creates any session, as each session copies the configuration when it is created.
+     *
+     * @param service the service
+     */
+    public void configure(final IoService service) {
+        service.getSessionConfig().setIdleTime(idleStatus, idleTimeSeconds);
+    }
+
+    /**
+     * Called once the handler has finished handling a sessionIdle notification.  This records the time
+     * the callbacks took and closes the session if it has now been idle too many times in a row.
+     *
+     * @param session the session
+     * @param idleStatus the status of the notification
+     * @param elapsedNanos the time the handler took, in nanoseconds
+     */
+    public void sessionIdle(final IoSession session, final IdleStatus idleStatus, final long elapsedNanos) {
+
+        if (idleStatus != this.idleStatus) return;
+
+        idleEvents.incrementAndGet();
+        idleCallbackNanos.addAndGet(elapsedNanos);
+
+        for (long max = maxIdleCallbackNanos.get(); elapsedNanos > max && !maxIdleCallbackNanos.compareAndSet(max, elapsedNanos); max = maxIdleCallbackNanos.get());
+
+        // MINA's idle count is consecutive; any I/O of the kind being watched resets it.
+
+        if (reapAfter > 0 && session.getIdleCount(idleStatus) >= reapAfter && !session.isClosing()) {
+            reapedSessions.incrementAndGet();
+            session.close(true);
+        }
+
+    }
+
+    public long getIdleEventCount() {
+        return idleEvents.get();
+    }
+
+    public long getReapedSessionCount() {
+        return reapedSessions.get();
+    }
+
+    /**
+     * Gets the total time the handler has spent handling idle notifications.
+     *
+     * @param timeUnit the unit
+     * @return the total time
+     */
+    public long getTotalIdleCallbackTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(idleCallbackNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the longest time the handler has spent handling a single idle notification.
+     *
+     * @param timeUnit the unit
+     * @return the maximum time
+     */
+    public long getMaxIdleCallbackTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(maxIdleCallbackNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,354 @@
+package org.apache.mina.guice.session;
+
+import com.google.inject.Key;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaGuiceException;
+import org.apache.mina.guice.MinaModule;
+import org.apache.mina.guice.MinaScopes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An off-heap store for objects scoped with {@link MinaScopes#SESSION}.  When a session goes idle,
+ * each of its session-scoped objects which is {@link Spillable} is written to a memory-mapped file
+ * and the session attribute holding it is replaced with a small {@link SpilledObject} handle.  The
+ * object is read back the next time the scope resolves it.  The restored object is a copy, so see
+ * {@link Spillable} for what a spilled type may hold.
+ *
+ * The backing file is created lazily, readable only by its owner on POSIX file systems, and is
+ * deleted as soon as it has been mapped.  Space is allocated first-fit from a list of free regions
+ * which are coalesced as they are released.  If the store is full, or an object exceeds the maximum
+ * object size, the object simply stays on heap.
+ *
+ * Install with {@link MinaModule#bindSessionSpillStore(int, int, Path)}.
+ */
+public class SessionSpillStore {
+
+    private static final int ALIGNMENT = 16;
+
+    private final int capacity;
+
+    private final int maxObjectSize;
+
+    private final Path directory;
+
+    private final TreeMap<Integer, Integer> freeRegions = new TreeMap<>();
+
+    private final AtomicInteger spilledObjects = new AtomicInteger();
+
+    private final AtomicLong spillCount = new AtomicLong();
+
+    private final AtomicLong restoreCount = new AtomicLong();
+
+    private volatile ByteBuffer buffer;
+
+    private int usedBytes;
+
+    /**
+     * Creates the store with its file in the system temporary directory.
+     *
+     * @param capacity the size of the memory-mapped file, in bytes
+     * @param maxObjectSize the largest serialized object which will be spilled, in bytes
+     */
+    public SessionSpillStore(final int capacity, final int maxObjectSize) {
+        this(capacity, maxObjectSize, null);
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param capacity the size of the memory-mapped file, in bytes
+     * @param maxObjectSize the largest serialized object which will be spilled, in bytes
+     * @param directory the directory in which to create the file, or null for the system temporary directory
+     */
+    public SessionSpillStore(final int capacity, final int maxObjectSize, final Path directory) {
+
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+        if (maxObjectSize <= 0) throw new IllegalArgumentException("Max object size must be positive.");
+
+        this.capacity = capacity;
+        this.maxObjectSize = maxObjectSize;
+        this.directory = directory;
+        this.freeRegions.put(0, capacity);
+
+    }
+
+    /**
+     * Spills all {@link Spillable}, session-scoped objects held by the given session.
+     *
+     * @param session the session
+     * @return the number of objects spilled
+     */
+    public int spill(final IoSession session) {
+
+        int spilled = 0;
+
+        for (final Object key : session.getAttributeKeys()) {
+
+            if (!(key instanceof Key)) continue;
+
+            final Object value = session.getAttribute(key);
+            if (!(value instanceof Spillable)) continue;
+
+            final SpilledObject handle = write(value);
+            if (handle == null) continue;
+
+            if (session.replaceAttribute(key, value, handle)) {
+                ++spilled;
+            } else {
+                free(handle.getOffset(), handle.getLength());
+            }
+
+        }
+
+        return spilled;
+
+    }
+
+    /**
+     * Releases any space held by the given session's spilled objects.  This should be called when
+     * the session is closed.
+     *
+     * @param session the session
+     */
+    public void release(final IoSession session) {
+        for (final Object key : session.getAttributeKeys()) {
+            final Object value = session.getAttribute(key);
+            if (value instanceof SpilledObject && session.removeAttribute(key, value)) {
+                free(((SpilledObject) value).getOffset(), ((SpilledObject) value).getLength());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of objects currently held in the store.
+     *
+     * @return the spilled object count
+     */
+    public int getSpilledObjectCount() {
+        return spilledObjects.get();
+    }
+
+    /**
+     * Gets the total number of objects spilled since the store was created.
+     *
+     * @return the spill count
+     */
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    /**
+     * Gets the total number of objects restored since the store was created.
+     *
+     * @return the restore count
+     */
+    public long getRestoreCount() {
+        return restoreCount.get();
+    }
+
+    /**
+     * Gets the number of bytes currently allocated in the store.
+     *
+     * @return the used bytes
+     */
+    public synchronized int getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    Object read(final SpilledObject handle) {
+
+        final byte[] bytes = new byte[handle.getLength()];
+        final ByteBuffer view = buffer().duplicate();
+        view.position(handle.getOffset());
+        view.get(bytes);
+
+        try (final ObjectInputStream ois = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes), handle.getClassLoader())) {
+            final Object object = ois.readObject();
+            restoreCount.incrementAndGet();
+            return object;
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new MinaGuiceException("Unable to restore spilled " + handle, ex);
+        }
+
+    }
+
+    void free(final SpilledObject handle) {
+        free(handle.getOffset(), handle.getLength());
+    }
+
+    private SpilledObject write(final Object value) {
+
+        final byte[] bytes;
+
+        try {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (final ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                oos.writeObject(value);
+            }
+            bytes = bos.toByteArray();
+        } catch (IOException ex) {
+            // Not actually serializable (e.g. a non-serializable field); leave it on heap.
+            return null;
+        }
+
+        if (bytes.length > maxObjectSize) return null;
+
+        final int offset = allocate(bytes.length);
+        if (offset < 0) return null;
+
+        final ByteBuffer view = buffer().duplicate();
+        view.position(offset);
+        view.put(bytes);
+
+        spilledObjects.incrementAndGet();
+        spillCount.incrementAndGet();
+
+        return new SpilledObject(this, offset, bytes.length, value.getClass().getClassLoader());
+
+    }
+
+    private synchronized int allocate(final int length) {
+
+        final int aligned = align(length);
+
+        for (final Map.Entry<Integer, Integer> region : freeRegions.entrySet()) {
+
+            if (region.getValue() < aligned) continue;
+
+            final int offset = region.getKey();
+            freeRegions.remove(offset);
+
+            if (region.getValue() > aligned) {
+                freeRegions.put(offset + aligned, region.getValue() - aligned);
+            }
+
+            usedBytes += aligned;
+            return offset;
+
+        }
+
+        return -1;
+
+    }
+
+    private synchronized void free(final int offset, final int length) {
+
+        int start = offset;
+        int size = align(length);
+
+        usedBytes -= size;
+        spilledObjects.decrementAndGet();
+
+        final Map.Entry<Integer, Integer> before = freeRegions.floorEntry(start);
+
+        if (before != null && before.getKey() + before.getValue() == start) {
+            freeRegions.remove(before.getKey());
+            start = before.getKey();
+            size += before.getValue();
+        }
+
+        final Integer after = freeRegions.get(start + size);
+
+        if (after != null) {
+            freeRegions.remove(start + size);
+            size += after;
+        }
+
+        freeRegions.put(start, size);
+
+    }
+
+    private ByteBuffer buffer() {
+
+        ByteBuffer buffer = this.buffer;
+        if (buffer != null) return buffer;
+
+        synchronized (this) {
+
+            if (this.buffer != null) return this.buffer;
+
+            try {
+
+                // Files.createTempFile grants access to the owner only, unlike File.createTempFile.
+
+                final Path file = directory == null ?
+                    Files.createTempFile("mina-guice-spill", ".bin") :
+                    Files.createTempFile(directory, "mina-guice-spill", ".bin");
+
+                try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                    this.buffer = mapped;
+                } finally {
+                    delete(file);
+                }
+
+                return this.buffer;
+
+            } catch (IOException ex) {
+                throw new MinaGuiceException("Unable to create spill store.", ex);
+            }
+
+        }
+
+    }
+
+    private static void delete(final Path file) {
+        try {
+            // The mapping outlives the file's name, so nothing is left behind if the process dies.
+            Files.delete(file);
+        } catch (IOException ex) {
+            // Some platforms refuse to delete a mapped file.
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private static int align(final int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        public ClassLoaderObjectInputStream(final InputStream in, final ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+            if (classLoader == null) return super.resolveClass(desc);
+
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException ex) {
+                return super.resolveClass(desc);
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.guice.MinaScopes;
+
+import java.io.Serializable;
+
+/**
+ * Marks a type scoped with {@link MinaScopes#SESSION} as safe to move into a {@link SessionSpillStore}
+ * while its session is idle.  Objects which do not implement this are never spilled.
+ *
+ * Spilling serializes the object and restores a copy, so implementations must hold only plain state.
+ * They must not hold injected dependencies or the {@link org.apache.mina.core.session.IoSession}, as
+ * those would come back as private copies rather than being injected again.  Nothing should keep a
+ * reference to the instance past the current event either; obtain it from a
+ * {@link javax.inject.Provider} each time instead, as a kept reference diverges from the restored copy.
+ */
+public interface Spillable extends Serializable {}
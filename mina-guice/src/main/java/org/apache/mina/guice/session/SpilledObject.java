@@ -0,0 +1,66 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaScopes;
+
+/**
+ * Stands in for an object scoped with {@link MinaScopes#SESSION} which has been written to a
+ * {@link SessionSpillStore}.  This takes the place of the object in the {@link IoSession}'s
+ * attributes until the scope next resolves it.
+ */
+public final class SpilledObject {
+
+    private final SessionSpillStore store;
+
+    private final int offset;
+
+    private final int length;
+
+    private final ClassLoader classLoader;
+
+    SpilledObject(final SessionSpillStore store, final int offset, final int length, final ClassLoader classLoader) {
+        this.store = store;
+        this.offset = offset;
+        this.length = length;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Restores the object into the given session's attribute.  If another thread restored it first,
+     * that thread's instance is returned instead so the session never holds two copies.
+     *
+     * @param session the session
+     * @param key the attribute key under which this handle is stored
+     * @return the restored object
+     */
+    public Object restore(final IoSession session, final Object key) {
+
+        final Object restored = store.read(this);
+
+        if (session.replaceAttribute(key, this, restored)) {
+            store.free(this);
+            return restored;
+        }
+
+        return session.getAttribute(key);
+
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    @Override
+    public String toString() {
+        return "SpilledObject[offset=" + offset + ", length=" + length + "]";
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.apache.mina.guice;
+
+import com.google.inject.matcher.Matcher;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static org.apache.mina.guice.SessionMatchers.remoteAddressIn;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionMatchersTest {
+
+    @Test
+    public void testPartialBytePrefix() throws Exception {
+
+        final Matcher<IoSession> matcher = remoteAddressIn("10.0.0.0/12");
+
+        assertTrue(matcher.matches(from("10.0.0.0")));
+        assertTrue(matcher.matches(from("10.15.255.255")));
+        assertFalse(matcher.matches(from("10.16.0.0")));
+        assertFalse(matcher.matches(from("11.0.0.0")));
+
+    }
+
+    @Test
+    public void testIpv6PartialBytePrefix() throws Exception {
+
+        final Matcher<IoSession> matcher = remoteAddressIn("fe80::/10");
+
+        assertTrue(matcher.matches(from("fe80::1")));
+        assertTrue(matcher.matches(from("febf:ffff::1")));
+        assertFalse(matcher.matches(from("fec0::1")));
+
+    }
+
+    @Test
+    public void testMixedFamiliesNeverMatch() throws Exception {
+        assertFalse(remoteAddressIn("0.0.0.0/0").matches(from("::1")));
+        assertFalse(remoteAddressIn("::/0").matches(from("127.0.0.1")));
+    }
+
+    @Test
+    public void testZeroPrefixMatchesWholeFamily() throws Exception {
+        assertTrue(remoteAddressIn("0.0.0.0/0").matches(from("255.255.255.255")));
+        assertTrue(remoteAddressIn("::/0").matches(from("2001:db8::1")));
+    }
+
+    @Test
+    public void testPlainAddressMatchesOnlyItself() throws Exception {
+
+        final Matcher<IoSession> matcher = remoteAddressIn("192.168.1.10");
+
+        assertTrue(matcher.matches(from("192.168.1.10")));
+        assertFalse(matcher.matches(from("192.168.1.11")));
+
+    }
+
+    @Test
+    public void testUnresolvedAndNonInetAddressesNeverMatch() {
+        assertFalse(remoteAddressIn("0.0.0.0/0").matches(from(InetSocketAddress.createUnresolved("localhost", 1234))));
+        assertFalse(remoteAddressIn("0.0.0.0/0").matches(from(new SocketAddress() {})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsLongPrefix() {
+        remoteAddressIn("10.0.0.0/33");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNegativePrefix() {
+        remoteAddressIn("10.0.0.0/-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidPrefix() {
+        remoteAddressIn("10.0.0.0/eight");
+    }
+
+    private static IoSession from(final String address) throws Exception {
+        return from(new InetSocketAddress(InetAddress.getByName(address), 1234));
+    }
+
+    private static IoSession from(final SocketAddress address) {
+        final DummySession session = new DummySession();
+        session.setRemoteAddress(address);
+        return session;
+    }
+
+}
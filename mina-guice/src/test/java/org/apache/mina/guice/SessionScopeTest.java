@@ -0,0 +1,96 @@
+package org.apache.mina.guice;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.OutOfScopeException;
+import com.google.inject.name.Names;
+import org.apache.mina.core.filterchain.IoFilter;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.DefaultWriteRequest;
+import org.apache.mina.core.write.WriteRequest;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionScopeTest {
+
+    @Test
+    public void testWriteToAnotherSessionFromAnEvent() throws Exception {
+
+        final Injector injector = Guice.createInjector(new MinaModule() {
+            @Override
+            protected void configureMINA() {
+                bindIoSession();
+                bindFilter().named("broadcast").atBeginningOfChain().to(BroadcastFilter.class);
+            }
+        });
+
+        final BroadcastFilter filter = (BroadcastFilter) injector.getInstance(Key.get(IoFilter.class, Names.named("broadcast")));
+        final IoSession sender = new DummySession();
+        final IoSession recipient = new DummySession();
+
+        filter.messageReceived(nextFilter(), sender, recipient);
+
+        assertEquals(Arrays.asList(sender, recipient, sender), filter.sessionsInScope);
+
+        try {
+            IoSessionProvider.getSession();
+            throw new AssertionError("Session still in scope.");
+        } catch (OutOfScopeException ex) {
+            // Expected
+        }
+
+    }
+
+    private static NextFilter nextFilter() {
+        return (NextFilter) Proxy.newProxyInstance(NextFilter.class.getClassLoader(), new Class<?>[]{NextFilter.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                    return null;
+                }
+            });
+    }
+
+    public static class BroadcastFilter extends IoFilterAdapter {
+
+        final List<IoSession> sessionsInScope = new ArrayList<>();
+
+        private final Provider<IoSession> ioSessionProvider;
+
+        @Inject
+        public BroadcastFilter(final Provider<IoSession> ioSessionProvider) {
+            this.ioSessionProvider = ioSessionProvider;
+        }
+
+        @Override
+        public void messageReceived(final NextFilter nextFilter, final IoSession session, final Object message) throws Exception {
+            final IoSession recipient = (IoSession) message;
+            final WriteRequest writeRequest = new DefaultWriteRequest("message");
+            sessionsInScope.add(ioSessionProvider.get());
+            filterWrite(nextFilter, recipient, writeRequest);
+            sessionsInScope.add(ioSessionProvider.get());
+        }
+
+        @Override
+        public void filterWrite(final NextFilter nextFilter, final IoSession session, final WriteRequest writeRequest) throws Exception {
+            sessionsInScope.add(ioSessionProvider.get());
+            nextFilter.filterWrite(session, writeRequest);
+        }
+
+    }
+
+}
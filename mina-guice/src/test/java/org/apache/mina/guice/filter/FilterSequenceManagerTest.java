@@ -0,0 +1,160 @@
+package org.apache.mina.guice.filter;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.filterchain.IoFilterChain;
+import org.apache.mina.core.filterchain.IoFilterChainBuilder;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.guice.MinaModule;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilterSequenceManagerTest {
+
+    private final List<String> received = new ArrayList<>();
+
+    private final RecordingFilter a = new RecordingFilter("a");
+
+    private final RecordingFilter b = new RecordingFilter("b");
+
+    private final RecordingFilter c = new RecordingFilter("c");
+
+    private FilterSequenceManager manager;
+
+    private IoSession session;
+
+    @Before
+    public void setUp() throws Exception {
+
+        final Injector injector = Guice.createInjector(new MinaModule() {
+            @Override
+            protected void configureMINA() {
+                bindFilterChainBuilder();
+                bindFilter().named("a").atBeginningOfChain().toInstance(a);
+                bindFilter().named("b").after("a").toInstance(b);
+                bindFilter().named("c").after("b").toInstance(c);
+            }
+        });
+
+        manager = injector.getInstance(FilterSequenceManager.class);
+        manager.publish(Arrays.asList("a", "b"));
+
+        session = new DummySession();
+        injector.getInstance(IoFilterChainBuilder.class).buildFilterChain(session.getFilterChain());
+
+    }
+
+    @Test
+    public void testChainUnchangedUntilMigrated() {
+
+        manager.publish(Arrays.asList("b", "a"));
+        receive();
+
+        assertEquals(Arrays.asList("a", "b"), received);
+        assertEquals(Arrays.asList("a", "b"), chain());
+
+    }
+
+    @Test
+    public void testAddAndRemove() {
+
+        manager.publish(Arrays.asList("c", "a"));
+        manager.migrate(session);
+        receive();
+
+        assertEquals(Arrays.asList("c", "a"), received);
+        assertEquals(Arrays.asList("c", "a"), chain());
+
+    }
+
+    @Test
+    public void testReorder() {
+
+        manager.publish(Arrays.asList("c", "a", "b"));
+        manager.migrate(session);
+        receive();
+
+        manager.publish(Arrays.asList("b", "c", "a"));
+        manager.migrate(session);
+        received.clear();
+        receive();
+
+        assertEquals(Arrays.asList("b", "c", "a"), received);
+        assertEquals(Arrays.asList("b", "c", "a"), chain());
+
+    }
+
+    @Test
+    public void testMigrationRequestedDuringMigration() {
+
+        a.onReceived = new Runnable() {
+            @Override
+            public void run() {
+                manager.publish(Arrays.asList("c", "b"));
+                manager.migrate(session);
+            }
+        };
+
+        manager.publish(Arrays.asList("b", "a"));
+        manager.migrate(session);
+        receive();
+
+        assertEquals(Arrays.asList("b", "a"), received);
+        assertTrue(session.getFilterChain().contains(FilterSequenceManager.MIGRATION_FILTER_NAME));
+
+        a.onReceived = null;
+        received.clear();
+        receive();
+
+        assertEquals(Arrays.asList("c", "b"), received);
+        assertEquals(Arrays.asList("c", "b"), chain());
+        assertFalse(session.getFilterChain().contains(FilterSequenceManager.MIGRATION_FILTER_NAME));
+
+    }
+
+    private void receive() {
+        session.getFilterChain().fireMessageReceived("message");
+    }
+
+    private List<String> chain() {
+
+        final List<String> names = new ArrayList<>();
+
+        for (final IoFilterChain.Entry entry : session.getFilterChain().getAll()) {
+            names.add(entry.getName());
+        }
+
+        return names;
+
+    }
+
+    private final class RecordingFilter extends IoFilterAdapter {
+
+        private final String name;
+
+        private Runnable onReceived;
+
+        public RecordingFilter(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void messageReceived(final NextFilter nextFilter, final IoSession session, final Object message) throws Exception {
+            received.add(name);
+            if (onReceived != null) onReceived.run();
+            nextFilter.messageReceived(session, message);
+        }
+
+    }
+
+}
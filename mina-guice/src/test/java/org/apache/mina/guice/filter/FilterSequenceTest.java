@@ -0,0 +1,132 @@
+package org.apache.mina.guice.filter;
+
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matcher;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.mina.guice.SessionMatchers.hasAttribute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FilterSequenceTest {
+
+    @Test
+    public void testSelectWithoutConditions() {
+
+        final FilterSequence sequence = new FilterSequence(Arrays.asList("a", "b"));
+
+        assertEquals(Arrays.asList("a", "b"), sequence.select(new DummySession()));
+        assertEquals(1, sequence.getVariantCount());
+
+    }
+
+    @Test
+    public void testSelectCachesVariants() {
+
+        final CountingMatcher tls = new CountingMatcher("tls");
+        final Map<String, Matcher<? super IoSession>> conditions = new LinkedHashMap<>();
+        conditions.put("ssl", tls);
+        conditions.put("audit", tls);
+        conditions.put("debug", hasAttribute("debug"));
+
+        final FilterSequence sequence = new FilterSequence(Arrays.asList("ssl", "codec", "audit", "debug"), conditions);
+
+        final IoSession plain = new DummySession();
+        final IoSession secure = session("tls");
+        final IoSession secureDebug = session("tls", "debug");
+
+        assertEquals(Collections.singletonList("codec"), sequence.select(plain));
+        assertEquals(Arrays.asList("ssl", "codec", "audit"), sequence.select(secure));
+        assertEquals(Arrays.asList("ssl", "codec", "audit", "debug"), sequence.select(secureDebug));
+
+        // A condition shared by several filters is evaluated once per session.
+
+        assertEquals(3, tls.evaluations);
+
+        assertSame(sequence.select(secure), sequence.select(session("tls")));
+        assertEquals(3, sequence.getVariantCount());
+
+    }
+
+    @Test
+    public void testSixtyFourConditions() {
+
+        final List<String> filterNames = new ArrayList<>();
+        final Map<String, Matcher<? super IoSession>> conditions = new LinkedHashMap<>();
+
+        for (int i = 0; i < FilterSequence.MAX_CONDITIONS; ++i) {
+            filterNames.add("f" + i);
+            conditions.put("f" + i, hasAttribute("c" + i));
+        }
+
+        final FilterSequence sequence = new FilterSequence(filterNames, conditions);
+
+        // The last condition occupies the sign bit of the mask.
+
+        final String last = "c" + (FilterSequence.MAX_CONDITIONS - 1);
+        assertEquals(Collections.singletonList("f" + (FilterSequence.MAX_CONDITIONS - 1)), sequence.select(session(last)));
+        assertEquals(Collections.singletonList("f0"), sequence.select(session("c0")));
+        assertEquals(Collections.<String>emptyList(), sequence.select(new DummySession()));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTooManyConditions() {
+
+        final List<String> filterNames = new ArrayList<>();
+        final Map<String, Matcher<? super IoSession>> conditions = new LinkedHashMap<>();
+
+        for (int i = 0; i <= FilterSequence.MAX_CONDITIONS; ++i) {
+            filterNames.add("f" + i);
+            conditions.put("f" + i, hasAttribute("c" + i));
+        }
+
+        new FilterSequence(filterNames, conditions);
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsConditionOnMissingFilter() {
+        new FilterSequence(Arrays.asList("a"), Collections.singletonMap("b", hasAttribute("b")));
+    }
+
+    private static IoSession session(final String ... attributes) {
+
+        final IoSession session = new DummySession();
+
+        for (final String attribute : attributes) {
+            session.setAttribute(attribute);
+        }
+
+        return session;
+
+    }
+
+    private static final class CountingMatcher extends AbstractMatcher<IoSession> {
+
+        private final String attribute;
+
+        private int evaluations;
+
+        public CountingMatcher(final String attribute) {
+            this.attribute = attribute;
+        }
+
+        @Override
+        public boolean matches(final IoSession session) {
+            ++evaluations;
+            return session.containsAttribute(attribute);
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LengthPrefixedFrameDecoderTest {
+
+    @Test
+    public void testRetainedFramesSurviveCompaction() throws Exception {
+
+        final LengthPrefixedFrameDecoder decoder = new LengthPrefixedFrameDecoder();
+        final IoSession session = new DummySession();
+        final FrameOutput out = new FrameOutput();
+
+        decoder.decode(session, IoBuffer.wrap(new byte[] {0, 0, 0, 4, 'A', 'A'}), out);
+        decoder.decode(session, IoBuffer.wrap(new byte[] {'A', 'A', 0, 0, 0, 4, 'B'}), out);
+        decoder.decode(session, IoBuffer.wrap(new byte[] {'B', 'B', 'B'}), out);
+
+        assertEquals(2, out.frames.size());
+        assertArrayEquals("AAAA".getBytes("US-ASCII"), bytes(out.frames.get(0)));
+        assertArrayEquals("BBBB".getBytes("US-ASCII"), bytes(out.frames.get(1)));
+
+    }
+
+    @Test
+    public void testRandomSplits() throws Exception {
+
+        final Random random = new Random(42);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final List<byte[]> expected = new ArrayList<>();
+
+        for (int i = 0; i < 2000; ++i) {
+
+            final byte[] payload = new byte[random.nextInt(600)];
+            random.nextBytes(payload);
+            expected.add(payload);
+
+            stream.write(payload.length >>> 8);
+            stream.write(payload.length);
+            stream.write(payload);
+
+        }
+
+        final LengthPrefixedFrameDecoder decoder = new LengthPrefixedFrameDecoder(2, 1024);
+        final IoSession session = new DummySession();
+        final FrameOutput out = new FrameOutput();
+        final byte[] bytes = stream.toByteArray();
+
+        for (int position = 0; position < bytes.length;) {
+            final int length = Math.min(bytes.length - position, 1 + random.nextInt(900));
+            decoder.decode(session, IoBuffer.wrap(bytes, position, length).slice(), out);
+            position += length;
+        }
+
+        // Every frame is checked only once all input is decoded, so each one must have been retained intact.
+
+        assertEquals(expected.size(), out.frames.size());
+
+        for (int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals("Frame " + i, expected.get(i), bytes(out.frames.get(i)));
+        }
+
+    }
+
+    @Test(expected = ProtocolDecoderException.class)
+    public void testRejectsOversizedFrame() throws Exception {
+        final LengthPrefixedFrameDecoder decoder = new LengthPrefixedFrameDecoder(4, 16);
+        decoder.decode(new DummySession(), IoBuffer.wrap(new byte[] {0, 0, 0, 17}), new FrameOutput());
+    }
+
+    private static byte[] bytes(final IoBuffer frame) {
+        final byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static final class FrameOutput extends AbstractProtocolDecoderOutput {
+
+        private final List<IoBuffer> frames = new ArrayList<>();
+
+        @Override
+        public void write(final Object message) {
+            frames.add((IoBuffer) message);
+        }
+
+        @Override
+        public void flush(final IoFilter.NextFilter nextFilter, final IoSession session) {}
+
+    }
+
+}
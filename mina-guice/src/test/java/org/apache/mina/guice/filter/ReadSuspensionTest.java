@@ -0,0 +1,32 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadSuspensionTest {
+
+    @Test
+    public void testResumesOnlyWhenNoOwnerHoldsIt() {
+
+        final IoSession session = new DummySession();
+
+        ReadSuspension.suspend(session, ReadSuspension.WRITE_BACKPRESSURE);
+        ReadSuspension.suspend(session, ReadSuspension.RATE_LIMIT);
+        assertTrue(session.isReadSuspended());
+
+        ReadSuspension.resume(session, ReadSuspension.RATE_LIMIT);
+        assertTrue(session.isReadSuspended());
+
+        ReadSuspension.resume(session, ReadSuspension.RATE_LIMIT);
+        assertTrue(session.isReadSuspended());
+
+        ReadSuspension.resume(session, ReadSuspension.WRITE_BACKPRESSURE);
+        assertFalse(session.isReadSuspended());
+
+    }
+
+}
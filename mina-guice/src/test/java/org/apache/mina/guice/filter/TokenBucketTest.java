@@ -0,0 +1,80 @@
+package org.apache.mina.guice.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    private static final long INTERVAL = 1000;
+
+    private static final long BURST = 4;
+
+    @Test
+    public void testBurstThenRate() {
+
+        final TokenBucket bucket = new TokenBucket(INTERVAL, BURST, 0);
+        assertTrue(bucket.isFull(0));
+
+        for (int i = 0; i < BURST; ++i) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+
+        assertFalse(bucket.isFull(0));
+        assertEquals(INTERVAL, bucket.tryAcquire(0));
+        assertEquals(INTERVAL / 2, bucket.tryAcquire(INTERVAL / 2));
+        assertEquals(INTERVAL / 2, bucket.getWait(INTERVAL / 2));
+
+        assertEquals(0, bucket.tryAcquire(INTERVAL));
+        assertEquals(INTERVAL, bucket.tryAcquire(INTERVAL));
+
+        assertTrue(bucket.isFull(BURST * INTERVAL + INTERVAL));
+
+    }
+
+    @Test
+    public void testAcquireGoesIntoDebt() {
+
+        final TokenBucket bucket = new TokenBucket(INTERVAL, BURST, 0);
+
+        for (int i = 1; i < BURST; ++i) {
+            assertEquals(0, bucket.acquire(0));
+        }
+
+        // Taking the last token leaves none for the next message.
+
+        assertEquals(INTERVAL, bucket.acquire(0));
+        assertEquals(2 * INTERVAL, bucket.acquire(0));
+        assertEquals(2 * INTERVAL, bucket.getWait(0));
+
+        assertEquals(INTERVAL, bucket.getWait(INTERVAL));
+        assertEquals(0, bucket.getWait(2 * INTERVAL));
+        assertEquals(0, bucket.tryAcquire(2 * INTERVAL));
+
+    }
+
+    @Test
+    public void testRefund() {
+
+        final TokenBucket bucket = new TokenBucket(INTERVAL, BURST, 0);
+
+        for (int i = 0; i < BURST; ++i) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+
+        bucket.refund();
+        assertEquals(0, bucket.getWait(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(INTERVAL, bucket.tryAcquire(0));
+
+        for (int i = 0; i < BURST; ++i) {
+            bucket.refund();
+        }
+
+        assertTrue(bucket.isFull(0));
+
+    }
+
+}
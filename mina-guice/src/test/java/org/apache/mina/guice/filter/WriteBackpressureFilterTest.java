@@ -0,0 +1,99 @@
+package org.apache.mina.guice.filter;
+
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.DefaultWriteRequest;
+import org.apache.mina.core.write.WriteRequest;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WriteBackpressureFilterTest {
+
+    private static final int HIGH_WATERMARK = 100;
+
+    private static final int LOW_WATERMARK = 10;
+
+    @Test
+    public void testQueueDrainedBeforeThrottleSuspendRead() throws Exception {
+
+        final DummySession session = new DummySession();
+        final WriteBackpressure backpressure = new DrainingWriteBackpressure(WriteBackpressure.Policy.SUSPEND_READ);
+        final WriteBackpressureFilter filter = new WriteBackpressureFilter(backpressure);
+
+        filter.filterWrite(schedulingNextFilter(), session, new DefaultWriteRequest("message"));
+
+        assertFalse(backpressure.isThrottled(session));
+        assertFalse(session.isReadSuspended());
+
+    }
+
+    @Test
+    public void testQueueDrainedBeforeThrottleDrop() throws Exception {
+
+        final DummySession session = new DummySession();
+        final WriteBackpressure backpressure = new DrainingWriteBackpressure(WriteBackpressure.Policy.DROP);
+        final WriteBackpressureFilter filter = new WriteBackpressureFilter(backpressure);
+
+        filter.filterWrite(schedulingNextFilter(), session, new DefaultWriteRequest("message"));
+
+        assertFalse(backpressure.isThrottled(session));
+
+        final WriteRequest writeRequest = new DefaultWriteRequest("message");
+        filter.filterWrite(schedulingNextFilter(), session, writeRequest);
+
+        assertEquals(0, backpressure.getDroppedWriteCount());
+
+    }
+
+    /**
+     * Schedules the write's bytes on the session, reaching the high watermark.
+     */
+    private static NextFilter schedulingNextFilter() {
+        return (NextFilter) Proxy.newProxyInstance(NextFilter.class.getClassLoader(), new Class<?>[]{NextFilter.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                    if (method.getName().equals("filterWrite")) {
+                        ((DummySession) args[0]).increaseScheduledWriteBytes(HIGH_WATERMARK);
+                    }
+                    return null;
+                }
+            });
+    }
+
+    /**
+     * Drains the queue and delivers its messageSent just before the session is throttled, as the
+     * processor may on another thread.
+     */
+    private static final class DrainingWriteBackpressure extends WriteBackpressure {
+
+        public DrainingWriteBackpressure(final Policy policy) {
+            super(HIGH_WATERMARK, LOW_WATERMARK, policy);
+        }
+
+        @Override
+        boolean throttle(final IoSession session) {
+
+            final DummySession dummySession = (DummySession) session;
+            dummySession.increaseScheduledWriteBytes(-HIGH_WATERMARK);
+
+            try {
+                new WriteBackpressureFilter(this).messageSent(schedulingNextFilter(), session, (WriteRequest) null);
+            } catch (Exception ex) {
+                throw new AssertionError(ex);
+            }
+
+            return super.throttle(session);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.apache.mina.guice.session;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactIoSessionAttributeMapTest {
+
+    @Test
+    public void testSmallMapOperations() {
+
+        final CompactIoSessionAttributeMap map = new CompactIoSessionAttributeMap();
+
+        assertNull(map.setAttribute(null, "a", 1));
+        assertEquals(1, map.setAttributeIfAbsent(null, "a", 2));
+        assertEquals(1, map.getAttribute(null, "a", null));
+        assertEquals(3, map.getAttribute(null, "b", 3));
+
+        assertFalse(map.replaceAttribute(null, "a", 2, 4));
+        assertTrue(map.replaceAttribute(null, "a", 1, 4));
+        assertFalse(map.removeAttribute(null, "a", 1));
+        assertTrue(map.removeAttribute(null, "a", 4));
+
+        assertFalse(map.containsAttribute(null, "a"));
+        assertEquals(1, map.getAttributeKeys(null).size());
+
+    }
+
+    @Test
+    public void testCollidingKeysSurviveRemoval() {
+
+        final CompactIoSessionAttributeMap map = new CompactIoSessionAttributeMap();
+
+        // Keys with the same hash share a probe sequence, so removing one must not hide the rest.
+
+        for (int i = 0; i < 4 * CompactIoSessionAttributeMap.SMALL_LIMIT; ++i) {
+            map.setAttribute(null, new CollidingKey(i), i);
+        }
+
+        for (int i = 0; i < 4 * CompactIoSessionAttributeMap.SMALL_LIMIT; i += 2) {
+            assertEquals(i, map.removeAttribute(null, new CollidingKey(i)));
+        }
+
+        for (int i = 1; i < 4 * CompactIoSessionAttributeMap.SMALL_LIMIT; i += 2) {
+            assertEquals(i, map.getAttribute(null, new CollidingKey(i), null));
+        }
+
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+
+        final Random random = new Random(42);
+        final CompactIoSessionAttributeMap map = new CompactIoSessionAttributeMap();
+        final Map<Object, Object> expected = new HashMap<>();
+
+        for (int i = 0; i < 100000; ++i) {
+
+            final Integer key = random.nextInt(64);
+            final Integer value = random.nextInt(4);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.put(key, value), map.setAttribute(null, key, value));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.removeAttribute(null, key));
+                    break;
+                case 2:
+                    final boolean replaced = value.equals(expected.get(key));
+                    if (replaced) expected.put(key, value + 1);
+                    assertEquals(replaced, map.replaceAttribute(null, key, value, value + 1));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.getAttribute(null, key, null));
+                    break;
+            }
+
+            assertEquals(expected.keySet(), map.getAttributeKeys(null));
+
+        }
+
+    }
+
+    private static final class CollidingKey {
+
+        private final int id;
+
+        public CollidingKey(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return object instanceof CollidingKey && ((CollidingKey) object).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+
+    }
+
+}
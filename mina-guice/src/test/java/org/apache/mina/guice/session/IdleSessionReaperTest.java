@@ -0,0 +1,64 @@
+package org.apache.mina.guice.session;
+
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IdleStatus;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdleSessionReaperTest {
+
+    @Test
+    public void testReapsAfterConsecutiveIdleNotifications() {
+
+        final IdleSessionReaper reaper = new IdleSessionReaper(30, TimeUnit.SECONDS, IdleStatus.READER_IDLE, 2);
+        final DummySession session = new DummySession();
+
+        reaper.configure(session.getService());
+        session.getConfig().setAll(session.getService().getSessionConfig());
+        assertEquals(30, session.getConfig().getReaderIdleTime());
+
+        idle(reaper, session, IdleStatus.READER_IDLE);
+        assertFalse(session.isClosing());
+
+        idle(reaper, session, IdleStatus.WRITER_IDLE);
+        assertFalse(session.isClosing());
+
+        idle(reaper, session, IdleStatus.READER_IDLE);
+        assertTrue(session.isClosing());
+
+        assertEquals(2, reaper.getIdleEventCount());
+        assertEquals(1, reaper.getReapedSessionCount());
+
+    }
+
+    @Test
+    public void testActivityResetsTheCount() {
+
+        final IdleSessionReaper reaper = new IdleSessionReaper(30, TimeUnit.SECONDS, IdleStatus.READER_IDLE, 2);
+        final DummySession session = new DummySession();
+        session.getConfig().setReaderIdleTime(30);
+
+        idle(reaper, session, IdleStatus.READER_IDLE);
+        session.increaseReadBytes(1, System.currentTimeMillis());
+        idle(reaper, session, IdleStatus.READER_IDLE);
+
+        assertFalse(session.isClosing());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsSubSecondIdleTime() {
+        new IdleSessionReaper(500, TimeUnit.MILLISECONDS, IdleStatus.BOTH_IDLE, 1);
+    }
+
+    private static void idle(final IdleSessionReaper reaper, final DummySession session, final IdleStatus idleStatus) {
+        session.increaseIdleCount(idleStatus, System.currentTimeMillis());
+        reaper.sessionIdle(session, idleStatus, 0);
+    }
+
+}